@@ -0,0 +1,71 @@
+package com.linkbyte.everscript;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// JMH benchmarks for each stage of the pipeline over the programs in benchmarks/.
+// Lives in the interpreter's package since Scanner, Parser and Resolver are package-private.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+  @Param({ "recursion", "numeric", "methods", "strings", "arrays", "list" })
+  public String program;
+
+  private String file;
+  private String source;
+  private List<Stmt> parsed;
+  // What Context.run executes: resolved and optimized.
+  private List<Stmt> statements;
+  private Context context;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    // Programs print their results; keep that out of the JMH output.
+    PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+    context = new Context(discard);
+
+    Path corpus = Paths.get(System.getProperty("everscript.corpus", "benchmarks"));
+    file = program + ".evs";
+    source = new String(Files.readAllBytes(corpus.resolve(file)), StandardCharsets.UTF_8);
+    parsed = parse();
+    statements = parse();
+    new Resolver(context.interpreter).resolve(statements);
+    new Optimizer(context.interpreter).optimize(statements);
+  }
+
+  // Walks the token types only; the parser creates Token objects just for the tokens it keeps.
+  @Benchmark
+  public int scan() {
+    Scanner scanner = new Scanner(context, file, source);
+    int count = 0;
+    while (scanner.type(count) != TokenType.EOF) count++;
+    return count;
+  }
+
+  // The parser pulls tokens from the scanner as it goes, so this includes scanning.
+  @Benchmark
+  public List<Stmt> parse() {
+    return new Parser(context, new Scanner(context, file, source)).parse();
+  }
+
+  @Benchmark
+  public Interpreter resolve() {
+    Interpreter interpreter = new Interpreter(context);
+    new Resolver(interpreter).resolve(parsed);
+    return interpreter;
+  }
+
+  @Benchmark
+  public void interpret() {
+    context.interpreter.interpret(statements);
+  }
+}
@@ -0,0 +1,56 @@
+package com.linkbyte.everscript;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Scanner throughput on large inputs, built by repeating the benchmark corpus up to the given
+// number of kilobytes. Divide the size by the average time for MB/s.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScannerBenchmark {
+  private static final String[] PROGRAMS = { "recursion", "numeric", "methods", "strings", "arrays", "list" };
+
+  @Param({ "64", "1024", "8192" })
+  public int kilobytes;
+
+  private String source;
+  private Context context;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    context = new Context(new PrintStream(OutputStream.nullOutputStream()));
+
+    Path corpus = Paths.get(System.getProperty("everscript.corpus", "benchmarks"));
+    StringBuilder programs = new StringBuilder();
+    for (String program : PROGRAMS) {
+      programs.append(new String(Files.readAllBytes(corpus.resolve(program + ".evs")), StandardCharsets.UTF_8));
+    }
+    StringBuilder input = new StringBuilder();
+    while (input.length() < kilobytes * 1024) input.append(programs);
+    source = input.toString();
+  }
+
+  // What the parser pays for tokens it only checks and skips.
+  @Benchmark
+  public int types() {
+    Scanner scanner = new Scanner(context, "large.evs", source);
+    int count = 0;
+    while (scanner.type(count) != TokenType.EOF) count++;
+    return count;
+  }
+
+  // Every token materialized, with interned lexemes.
+  @Benchmark
+  public List<Token> tokens() {
+    return new Scanner(context, "large.evs", source).scanTokens();
+  }
+}
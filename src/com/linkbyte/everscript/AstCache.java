@@ -0,0 +1,77 @@
+package com.linkbyte.everscript;
+
+import java.util.*;
+
+// Resolved ASTs of library and imported sources, keyed by the file name, its source and
+// whether it went through the Optimizer, and shared by every Context in the JVM. The map
+// hashes the source text and compares it in full, so an edited file never picks up a stale AST.
+//
+// The cached trees never run. Every context gets its own copy (see Copier), so the caches and
+// specializations a run leaves on the nodes stay with the context that made them and go away
+// with it. Only the MAX_ENTRIES most recently used sources are kept.
+class AstCache {
+  static final AstCache shared = new AstCache();
+  private static final int MAX_ENTRIES = 64;
+
+  // Sources arrive as decoded file buffers, so the key compares them in place instead of
+  // copying each one into a String.
+  private static class Key {
+    final String file;
+    final CharSequence source;
+    final boolean optimized;
+    final int hash;
+
+    Key(String file, CharSequence source, boolean optimized) {
+      this.file = file;
+      this.source = source;
+      this.optimized = optimized;
+      int h = Boolean.hashCode(optimized) * 31 + file.hashCode();
+      for (int i = 0; i < source.length(); i++) {
+        h = 31 * h + source.charAt(i);
+      }
+      this.hash = h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key other = (Key) o;
+      return hash == other.hash && optimized == other.optimized && file.equals(other.file)
+          && CharSequence.compare(source, other.source) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  private final Map<Key, List<Stmt>> entries = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, List<Stmt>> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  // A copy of the cached AST for source, or null if it isn't cached. The copy is made outside
+  // the lock; cached trees are never changed, so several threads can copy one at once.
+  List<Stmt> get(String file, CharSequence source, boolean optimized) {
+    Key key = new Key(file, source, optimized);
+    List<Stmt> statements;
+    synchronized (entries) {
+      statements = entries.get(key);
+    }
+    return statements != null ? Copier.copy(statements) : null;
+  }
+
+  // Caches a copy of statements, taken before the caller runs them. Two contexts loading the
+  // same source at once both resolve it and the last one is kept. A cryptographic digest would
+  // cost more to set up on a cold JVM than the libraries take to parse.
+  void put(String file, CharSequence source, boolean optimized, List<Stmt> statements) {
+    Key key = new Key(file, source, optimized);
+    List<Stmt> copy = Copier.copy(statements);
+    synchronized (entries) {
+      entries.put(key, copy);
+    }
+  }
+}
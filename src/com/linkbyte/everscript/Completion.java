@@ -0,0 +1,8 @@
+package com.linkbyte.everscript;
+
+// How a statement finished executing. A RETURN completion unwinds every enclosing
+// statement up to the function call, which picks up the value from the Interpreter.
+enum Completion {
+  NORMAL,
+  RETURN
+}
@@ -0,0 +1,134 @@
+package com.linkbyte.everscript;
+
+import java.io.*;
+import java.util.*;
+
+// An isolated EverScript runtime with its own globals, error state and output stream.
+// A context runs one script at a time, but separate contexts share no mutable state and
+// can run on different threads at once, e.g. one per task on a thread pool.
+public class Context {
+  final Interpreter interpreter;
+  final ModuleRegistry modules = new ModuleRegistry();
+  final SymbolTable symbols = new SymbolTable();
+  final PrintStream out;
+  private boolean hadError = false;
+  private boolean hadRuntimeError = false;
+  private int errors = 0;
+  private int runtimeErrors = 0;
+  private CharSequence source;
+  private boolean optimize = true;
+
+  public Context() {
+    this(System.out);
+  }
+
+  // Creates a context that prints to out.
+  public Context(PrintStream out) {
+    this.out = out;
+    this.interpreter = new Interpreter(this);
+    interpreter.globals.libraries = new LibraryLoader(this);
+  }
+
+  // Runs scripts through the Optimizer after resolving them. On by default; turning it off
+  // is only useful to compare against unoptimized runs.
+  public void optimize(boolean enabled) {
+    optimize = enabled;
+  }
+
+  // Runs a script in this context; returns false if it reported any errors.
+  public boolean run(String file, CharSequence input) {
+    source = input;
+    List<Stmt> statements = compile(file, input);
+    if (statements == null) return false;
+    return execute(statements);
+  }
+
+  // Runs a library or imported file. Its resolved AST is copied from the AstCache when this
+  // source was loaded before, by this or any other context.
+  boolean load(String file, CharSequence input) {
+    source = input;
+    List<Stmt> statements = AstCache.shared.get(file, input, optimize);
+    if (statements == null) {
+      statements = compile(file, input);
+      if (statements == null) return false;
+      AstCache.shared.put(file, input, optimize, statements);
+    }
+    return execute(statements);
+  }
+
+  private List<Stmt> compile(String file, CharSequence input) {
+    Scanner scanner = new Scanner(this, file, input);
+    Parser parser = new Parser(this, scanner);
+    List<Stmt> statements = parser.parse();
+
+    if (errors != 0) return null;
+    if (hadError) return null;
+
+    new Resolver(interpreter).resolve(statements);
+
+    if (hadError) return null;
+    if (errors != 0) return null;
+
+    if (optimize) new Optimizer(interpreter).optimize(statements);
+    return statements;
+  }
+
+  private boolean execute(List<Stmt> statements) {
+    int before = errors + runtimeErrors;
+    interpreter.interpret(statements);
+    return errors + runtimeErrors == before;
+  }
+
+  public boolean hadError() {
+    return hadError;
+  }
+
+  public boolean hadRuntimeError() {
+    return hadRuntimeError;
+  }
+
+  public int errors() {
+    return errors;
+  }
+
+  // Forgets earlier compile errors so later scripts can run, as the REPL does after each line.
+  public void resetErrors() {
+    hadError = false;
+    errors = 0;
+  }
+
+  void error(Token token, String errorType, String message) {
+    error(token.file.name, token.line, token.col, errorType, message);
+  }
+
+  void error(String file, int line, int col, String errorType, String message) {
+    errors++;
+    out.println(line(line));
+    out.println(repeat(col - 1) + String.format("^ [file '%s', line %d, col %d]: %s: %s", file, line, col, errorType, message));
+    out.println();
+    hadError = true;
+  }
+
+  void runtimeError(RuntimeError error) {
+    out.printf("[file '%s', line %d, col %d]: %s%n", error.token.file.name, error.token.line, error.token.col, error.getMessage());
+    out.println();
+    runtimeErrors++;
+    hadRuntimeError = true;
+  }
+
+  // The text of a line of the current source, found without splitting the whole file.
+  private String line(int number) {
+    int start = 0;
+    for (int i = 1; i < number && start < source.length(); start++) {
+      if (source.charAt(start) == '\n') i++;
+    }
+    int end = start;
+    while (end < source.length() && source.charAt(end) != '\n' && source.charAt(end) != '\r') end++;
+    return source.subSequence(start, end).toString();
+  }
+
+  private static String repeat(int n) {
+    if (n <= 0) return "";
+    return new String(new char[n]).replace('\0', ' ');
+  }
+}
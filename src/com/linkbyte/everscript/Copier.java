@@ -0,0 +1,230 @@
+package com.linkbyte.everscript;
+
+import java.util.*;
+
+// Makes a deep copy of a resolved program, keeping everything the Resolver worked out (depths,
+// slots and scope sizes) but none of the state a run leaves on the nodes: inline caches, the
+// cells of globals and Binary specializations. The AstCache hands each context its own copy so
+// that none of that state is shared between contexts. Tokens and literals never change, so the
+// copy shares them.
+class Copier implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+  static List<Stmt> copy(List<Stmt> statements) {
+    return new Copier().statements(statements);
+  }
+
+  private List<Stmt> statements(List<Stmt> statements) {
+    List<Stmt> copy = new ArrayList<>(statements.size());
+    for (Stmt statement : statements) copy.add(copy(statement));
+    return copy;
+  }
+
+  private List<Expr> expressions(List<Expr> expressions) {
+    List<Expr> copy = new ArrayList<>(expressions.size());
+    for (Expr expression : expressions) copy.add(copy(expression));
+    return copy;
+  }
+
+  private List<Stmt.Function> functions(List<Stmt.Function> functions) {
+    List<Stmt.Function> copy = new ArrayList<>(functions.size());
+    for (Stmt.Function function : functions) copy.add(visitFunctionStmt(function));
+    return copy;
+  }
+
+  private Stmt copy(Stmt stmt) {
+    if (stmt == null) return null;
+    return stmt.accept(this);
+  }
+
+  private Expr copy(Expr expr) {
+    if (expr == null) return null;
+    return expr.accept(this);
+  }
+
+  @Override
+  public Stmt visitBlockStmt(Stmt.Block stmt) {
+    Stmt.Block copy = new Stmt.Block(statements(stmt.statements));
+    copy.scopeSize = stmt.scopeSize;
+    return copy;
+  }
+
+  @Override
+  public Stmt visitClassStmt(Stmt.Class stmt) {
+    Expr.Variable superclass = stmt.superclass != null ? visitVariableExpr(stmt.superclass) : null;
+    Stmt.Class copy = new Stmt.Class(stmt.name, superclass, functions(stmt.methods), functions(stmt.staticMethods));
+    copy.slot = stmt.slot;
+    return copy;
+  }
+
+  @Override
+  public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+    return new Stmt.Expression(copy(stmt.expression));
+  }
+
+  @Override
+  public Stmt.Function visitFunctionStmt(Stmt.Function stmt) {
+    Stmt.Function copy = new Stmt.Function(stmt.name, visitFunctionExpr(stmt.function));
+    copy.slot = stmt.slot;
+    return copy;
+  }
+
+  @Override
+  public Stmt visitIfStmt(Stmt.If stmt) {
+    return new Stmt.If(copy(stmt.condition), copy(stmt.thenBranch), copy(stmt.elseBranch));
+  }
+
+  @Override
+  public Stmt visitReturnStmt(Stmt.Return stmt) {
+    return new Stmt.Return(stmt.keyword, copy(stmt.value));
+  }
+
+  @Override
+  public Stmt visitVarStmt(Stmt.Var stmt) {
+    Stmt.Var copy = new Stmt.Var(stmt.name, copy(stmt.initializer));
+    copy.slot = stmt.slot;
+    return copy;
+  }
+
+  @Override
+  public Stmt visitWhileStmt(Stmt.While stmt) {
+    return new Stmt.While(copy(stmt.condition), copy(stmt.body));
+  }
+
+  @Override
+  public Stmt visitImportStmt(Stmt.Import stmt) {
+    Stmt.Import copy = new Stmt.Import(stmt.keyword, copy(stmt.module), stmt.namespace);
+    copy.slot = stmt.slot;
+    return copy;
+  }
+
+  @Override
+  public Stmt visitEnumStmt(Stmt.Enum stmt) {
+    Stmt.Enum copy = new Stmt.Enum(stmt.name, stmt.properties);
+    copy.slot = stmt.slot;
+    return copy;
+  }
+
+  @Override
+  public Stmt visitThrowStmt(Stmt.Throw stmt) {
+    return new Stmt.Throw(stmt.keyword, copy(stmt.thrown));
+  }
+
+  @Override
+  public Stmt visitTryStmt(Stmt.Try stmt) {
+    List<Stmt.Catch> catches = new ArrayList<>(stmt.catches.size());
+    for (Stmt.Catch catchStmt : stmt.catches) catches.add(visitCatchStmt(catchStmt));
+    return new Stmt.Try(stmt.keyword, copy(stmt.body), catches, copy(stmt.finallyStmt));
+  }
+
+  @Override
+  public Stmt.Catch visitCatchStmt(Stmt.Catch stmt) {
+    return new Stmt.Catch(stmt.keyword, stmt.errors, stmt.identifier, copy(stmt.body));
+  }
+
+  @Override
+  public Expr visitAssignExpr(Expr.Assign expr) {
+    Expr.Assign copy = new Expr.Assign(expr.name, copy(expr.value));
+    copy.depth = expr.depth;
+    copy.slot = expr.slot;
+    return copy;
+  }
+
+  @Override
+  public Expr visitBinaryExpr(Expr.Binary expr) {
+    return new Expr.Binary(copy(expr.left), expr.operator, copy(expr.right));
+  }
+
+  @Override
+  public Expr visitCallExpr(Expr.Call expr) {
+    return new Expr.Call(copy(expr.callee), expr.paren, expressions(expr.arguments));
+  }
+
+  @Override
+  public Expr visitGetExpr(Expr.Get expr) {
+    return new Expr.Get(copy(expr.object), expr.name, expr.operator);
+  }
+
+  @Override
+  public Expr visitGroupingExpr(Expr.Grouping expr) {
+    return new Expr.Grouping(copy(expr.expression));
+  }
+
+  @Override
+  public Expr visitLiteralExpr(Expr.Literal expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitLogicalExpr(Expr.Logical expr) {
+    return new Expr.Logical(copy(expr.left), expr.operator, copy(expr.right));
+  }
+
+  @Override
+  public Expr visitSetExpr(Expr.Set expr) {
+    return new Expr.Set(copy(expr.object), expr.name, copy(expr.value));
+  }
+
+  @Override
+  public Expr visitSuperExpr(Expr.Super expr) {
+    Expr.Super copy = new Expr.Super(expr.keyword, expr.method);
+    copy.depth = expr.depth;
+    copy.slot = expr.slot;
+    copy.receiver.depth = expr.receiver.depth;
+    copy.receiver.slot = expr.receiver.slot;
+    return copy;
+  }
+
+  @Override
+  public Expr visitThisExpr(Expr.This expr) {
+    Expr.This copy = new Expr.This(expr.keyword);
+    copy.depth = expr.depth;
+    copy.slot = expr.slot;
+    return copy;
+  }
+
+  @Override
+  public Expr visitUnaryExpr(Expr.Unary expr) {
+    return new Expr.Unary(expr.operator, copy(expr.right));
+  }
+
+  @Override
+  public Expr.Variable visitVariableExpr(Expr.Variable expr) {
+    Expr.Variable copy = new Expr.Variable(expr.name);
+    copy.depth = expr.depth;
+    copy.slot = expr.slot;
+    return copy;
+  }
+
+  @Override
+  public Expr visitArrayExpr(Expr.Array expr) {
+    return new Expr.Array(expr.bracket, expressions(expr.elements));
+  }
+
+  @Override
+  public Expr visitIndexGetExpr(Expr.IndexGet expr) {
+    return new Expr.IndexGet(copy(expr.indexee), expr.bracket, copy(expr.index));
+  }
+
+  @Override
+  public Expr visitIndexSetExpr(Expr.IndexSet expr) {
+    return new Expr.IndexSet(copy(expr.indexee), expr.bracket, copy(expr.index), copy(expr.value));
+  }
+
+  @Override
+  public Expr.Function visitFunctionExpr(Expr.Function expr) {
+    Expr.Function copy = new Expr.Function(expr.params, statements(expr.body));
+    copy.scopeSize = expr.scopeSize;
+    copy.thisSlot = expr.thisSlot;
+    return copy;
+  }
+
+  @Override
+  public Expr visitDictionaryExpr(Expr.Dictionary expr) {
+    LinkedHashMap<Token, Object> properties = new LinkedHashMap<>();
+    for (Map.Entry<Token, Object> property : expr.properties.entrySet()) {
+      properties.put(property.getKey(), copy((Expr) property.getValue()));
+    }
+    Expr.Dictionary copy = new Expr.Dictionary(expr.name, properties);
+    copy.slot = expr.slot;
+    return copy;
+  }
+}
@@ -3,89 +3,266 @@ package com.linkbyte.everscript;
 import java.util.*;
 
 class ESArray implements ESIndexable {
-    final List<Object> elements;
-    private final Map<String, ESCallable> methods;
+    private static final Map<String, NativeMethod<ESArray>> METHODS = new HashMap<>();
+
+    final Elements elements;
 
     ESArray(List<Object> elements) {
-        this.elements = elements;
-        methods = createMethods(this);
+        this(elements.toArray());
     }
 
-    private static Map<String, ESCallable> createMethods(ESArray array) {
-        Map<String, ESCallable> methods = new HashMap<>();
-        methods.put("push", new ESCallable() {
-            @Override
-            public int arity() {
-                return 1;
+    // Takes ownership of the array.
+    ESArray(Object[] elements) {
+        this.elements = new Elements(elements);
+    }
+
+    // The elements live in a ring buffer, so adding and removing at either end is O(1) and
+    // indexing is still a single array read. Removing from the middle shifts the nearer end.
+    static final class Elements extends AbstractList<Object> implements RandomAccess {
+        private Object[] items;
+        private int head = 0;
+        private int size;
+
+        Elements(Object[] items) {
+            this.items = items.length == 0 ? new Object[8] : items;
+            this.size = items.length;
+        }
+
+        private int slot(int index) {
+            int slot = head + index;
+            return slot < items.length ? slot : slot - items.length;
+        }
+
+        @Override
+        public Object get(int index) {
+            Objects.checkIndex(index, size);
+            return items[slot(index)];
+        }
+
+        @Override
+        public Object set(int index, Object element) {
+            Objects.checkIndex(index, size);
+            int slot = slot(index);
+            Object previous = items[slot];
+            items[slot] = element;
+            return previous;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void add(int index, Object element) {
+            Objects.checkIndex(index, size + 1);
+            if (size == items.length) grow();
+            if (index < size - index) {
+                head = head == 0 ? items.length - 1 : head - 1;
+                for (int i = 0; i < index; i++) items[slot(i)] = items[slot(i + 1)];
+            } else {
+                for (int i = size; i > index; i--) items[slot(i)] = items[slot(i - 1)];
+            }
+            items[slot(index)] = element;
+            size++;
+            modCount++;
+        }
+
+        @Override
+        public Object remove(int index) {
+            Objects.checkIndex(index, size);
+            Object element = items[slot(index)];
+            if (index < size - index) {
+                for (int i = index; i > 0; i--) items[slot(i)] = items[slot(i - 1)];
+                items[head] = null;
+                head = slot(1);
+            } else {
+                for (int i = index; i < size - 1; i++) items[slot(i)] = items[slot(i + 1)];
+                items[slot(size - 1)] = null;
             }
+            size--;
+            modCount++;
+            return element;
+        }
+
+        // Unrolls the ring into a larger array, so the first element is at the start again.
+        private void grow() {
+            Object[] grown = new Object[items.length * 2];
+            int first = Math.min(size, items.length - head);
+            System.arraycopy(items, head, grown, 0, first);
+            System.arraycopy(items, 0, grown, first, size - first);
+            items = grown;
+            head = 0;
+        }
+    }
 
+    static {
+        METHODS.put("push", new NativeMethod<>(1) {
             @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                array.elements.addAll(arguments);
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                array.elements.add(arguments.get(0));
                 return null;
             }
         });
-        methods.put("pop", new ESCallable() {
+        // pop has always taken from the front, and keeps doing so; popBack takes from the end.
+        METHODS.put("pop", new NativeMethod<>(0) {
             @Override
-            public int arity() {
-                return 0;
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return array.removeAt(name, 0);
             }
-
+        });
+        METHODS.put("shift", new NativeMethod<>(0) {
+            @Override
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return array.removeAt(name, 0);
+            }
+        });
+        METHODS.put("unshift", new NativeMethod<>(1) {
+            @Override
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                array.elements.add(0, arguments.get(0));
+                return null;
+            }
+        });
+        METHODS.put("popBack", new NativeMethod<>(0) {
+            @Override
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return array.removeAt(name, array.elements.size() - 1);
+            }
+        });
+        METHODS.put("remove", new NativeMethod<>(1) {
             @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                try {
-                    return array.elements.remove(0);
-                } catch (IndexOutOfBoundsException e) {
-                    throw new NativeError("Array is empty.");
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                if (!(arguments.get(0) instanceof Double)) throw new RuntimeError(name, "Array index must be an integer value.");
+                return array.removeAt(name, ((Double) arguments.get(0)).intValue());
+            }
+        });
+        METHODS.put("length", new NativeMethod<>(0) {
+            @Override
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return (double) array.length();
+            }
+        });
+        METHODS.put("isEmpty", new NativeMethod<>(0) {
+            @Override
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return array.length() == 0;
+            }
+        });
+        METHODS.put("map", new NativeMethod<>(1) {
+            @Override
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object function = arguments.get(0);
+                Object[] result = new Object[array.length()];
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = interpreter.call(function, Collections.singletonList(array.elements.get(i)), name);
                 }
+                return new ESArray(result);
             }
         });
-        methods.put("remove", new ESCallable() {
+        METHODS.put("filter", new NativeMethod<>(1) {
             @Override
-            public int arity() {
-                return 1;
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object function = arguments.get(0);
+                List<Object> result = new ArrayList<>();
+                for (Object value : array.elements) {
+                    if (interpreter.isTruthy(interpreter.call(function, Collections.singletonList(value), name))) result.add(value);
+                }
+                return new ESArray(result.toArray());
             }
-
+        });
+        // Like List's reduce, the function is called with each value and the result so far.
+        METHODS.put("reduce", new NativeMethod<>(2) {
             @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                try {
-                    int i = ((Double) arguments.get(0)).intValue();
-                    return array.elements.remove(i);
-                } catch (NumberFormatException e) {
-                    throw new NativeError("Array index must be an integer value.");
-                } catch (IndexOutOfBoundsException e) {
-                    throw new NativeError("Array index out of bounds.");
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object function = arguments.get(0);
+                Object result = arguments.get(1);
+                for (Object value : array.elements) {
+                    result = interpreter.call(function, Arrays.asList(value, result), name);
                 }
+                return result;
             }
         });
-        methods.put("length", new ESCallable() {
+        // Copies the elements from start up to, but not including, end. Negative bounds count
+        // from the end of the array, and bounds past either end are clamped.
+        METHODS.put("slice", new NativeMethod<>(2) {
             @Override
-            public int arity() {
-                return 0;
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                int from = array.bound(name, arguments.get(0));
+                int to = array.bound(name, arguments.get(1));
+                if (to < from) to = from;
+                return new ESArray(array.elements.subList(from, to).toArray());
             }
-
+        });
+        METHODS.put("indexOf", new NativeMethod<>(1) {
             @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return array.length();
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object value = arguments.get(0);
+                for (int i = 0; i < array.length(); i++) {
+                    if (interpreter.isEqual(array.elements.get(i), value)) return (double) i;
+                }
+                return -1.0;
             }
         });
-        methods.put("isEmpty", new ESCallable() {
+        // Sorts in place, numbers numerically and strings alphabetically, and returns the array.
+        METHODS.put("sort", new NativeMethod<>(0) {
             @Override
-            public int arity() {
-                return 0;
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                array.elements.sort((a, b) -> {
+                    if (a instanceof Double && b instanceof Double) return Double.compare((Double) a, (Double) b);
+                    if (a instanceof String && b instanceof String) return ((String) a).compareTo((String) b);
+                    throw new RuntimeError(name, "Only arrays of numbers or of strings can be sorted.");
+                });
+                return array;
             }
-
+        });
+        METHODS.put("parallelMap", new NativeMethod<>(1) {
             @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return array.length() == 0;
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return new ESArray(Parallel.map(interpreter, array.elements.toArray(), arguments.get(0), name));
+            }
+        });
+        METHODS.put("parallelFilter", new NativeMethod<>(1) {
+            @Override
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return new ESArray(Parallel.filter(interpreter, array.elements.toArray(), arguments.get(0), name));
             }
         });
-        return methods;
+        METHODS.put("parallelReduce", new NativeMethod<>(2) {
+            @Override
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return Parallel.reduce(interpreter, array.elements.toArray(), arguments.get(0), arguments.get(1), name);
+            }
+        });
+        METHODS.put("toNumberArray", new NativeMethod<>(0) {
+            @Override
+            Object call(ESArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return ESNumberArray.of(name, array.elements);
+            }
+        });
+    }
+
+    static NativeMethod<ESArray> method(Token name) {
+        NativeMethod<ESArray> method = METHODS.get(name.lexeme);
+        if (method != null) return method;
+        throw new RuntimeError(name, "No such method '" + name.lexeme + "' exists in 'array' type.");
     }
 
     ESCallable getMethod(Token name) {
-        if (methods.containsKey(name.lexeme)) return methods.get(name.lexeme);
-        throw new RuntimeError(name, "No such method exists '" + name.lexeme + "' exists in 'array' type.");
+        return method(name).bind(this, name);
+    }
+
+    private Object removeAt(Token name, int i) {
+        if (elements.isEmpty()) throw new RuntimeError(name, "Array is empty.");
+        if (i < 0 || i >= elements.size()) throw new RuntimeError(name, "Array index out of bounds.");
+        return elements.remove(i);
+    }
+
+    private int bound(Token name, Object index) {
+        if (!(index instanceof Double)) throw new RuntimeError(name, "Array index must be an integer value.");
+        int i = ((Double) index).intValue();
+        if (i < 0) i += elements.size();
+        return Math.max(0, Math.min(i, elements.size()));
     }
 
     @Override
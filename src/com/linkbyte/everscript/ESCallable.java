@@ -5,4 +5,9 @@ import java.util.List;
 interface ESCallable {
   int arity();
   Object call(Interpreter interpreter, List<Object> arguments);
+
+  // Interpreter.call passes the token of the call, so natives can report errors where they were called.
+  default Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+    return call(interpreter, arguments);
+  }
 }
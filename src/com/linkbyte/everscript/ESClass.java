@@ -5,38 +5,45 @@ import java.util.*;
 class ESClass extends ESInstance implements ESCallable {
   final String name;
   final ESClass superclass;
+  // The interpreter that declared the class, used to run its toString method unless a
+  // parallel worker on this thread has its own (see Parallel.interpreter).
+  private final Interpreter interpreter;
   private final Map<String, ESFunction> methods;
   private final Map<String, ESFunction> _staticMethods = new HashMap<>();
+  // Shared by the instances of this class; fieldCount is the most fields any of them holds.
+  final Shape rootShape = new Shape();
+  int fieldCount = 0;
 
-  private ESClass(String name, Map<String, ESFunction> staticMethods) {
+  private ESClass(Interpreter interpreter, String name, Map<String, ESFunction> staticMethods) {
     super(null);
 
+    this.interpreter = interpreter;
     this.name = name;
     this.methods = staticMethods;
     this.superclass = null;
   }
 
-  ESClass(String name, ESClass superclass, Map<String, ESFunction> methods, Map<String, ESFunction> staticMethods) {
-    super(superclass);
+  ESClass(Interpreter interpreter, String name, ESClass superclass, Map<String, ESFunction> methods, Map<String, ESFunction> staticMethods) {
+    super(null);
+    this.interpreter = interpreter;
     this.superclass = superclass;
     this.name = name;
     this.methods = methods;
-    this.klass = new ESClass(name + " (metaclass)", staticMethods);
+    this.klass = new ESClass(interpreter, name + " (metaclass)", staticMethods);
 
     for (Map.Entry<String, ESFunction> staticMethod : staticMethods.entrySet()) {
       _staticMethods.put(staticMethod.getKey(), staticMethod.getValue());
     }
   }
 
-  ESFunction findMethod(ESInstance instance, String name) {
-    if (methods.containsKey(name)) {
-      return methods.get(name).bind(instance);
-    } else if (_staticMethods.containsKey(name)) {
-      return _staticMethods.get(name).bind(instance);
-    }
+  // Returns the unbound method; callers bind it to the receiver.
+  ESFunction findMethod(String name) {
+    ESFunction method = methods.get(name);
+    if (method == null) method = _staticMethods.get(name);
+    if (method != null) return method;
 
     if (superclass != null) {
-      return superclass.findMethod(instance, name);
+      return superclass.findMethod(name);
     }
 
     return null;
@@ -45,7 +52,7 @@ class ESClass extends ESInstance implements ESCallable {
   @Override
   public String toString() {
     if (methods.containsKey("toString")) {
-      return (String) methods.get("toString").call(new Interpreter(), new ArrayList<>());
+      return (String) methods.get("toString").call(Parallel.interpreter(interpreter), new ArrayList<>());
     } else return this.name + " {}";
   }
 
@@ -54,7 +61,7 @@ class ESClass extends ESInstance implements ESCallable {
     ESInstance instance = new ESInstance(this);
     ESFunction initializer = methods.get(name);
     if (initializer != null) {
-      initializer.bind(instance).call(interpreter, arguments);
+      initializer.invoke(interpreter, instance, arguments);
     }
 
     return instance;
@@ -7,18 +7,22 @@ class ESFunction implements ESCallable {
     private final Expr.Function declaration;
     private final Environment closure;
     private final boolean isInitializer;
+    private final ESInstance receiver;
 
     ESFunction(String name, Expr.Function declaration, Environment closure, boolean isInitializer) {
+        this(name, declaration, closure, isInitializer, null);
+    }
+
+    private ESFunction(String name, Expr.Function declaration, Environment closure, boolean isInitializer, ESInstance receiver) {
         this.name = name;
         this.isInitializer = isInitializer;
         this.closure = closure;
         this.declaration = declaration;
+        this.receiver = receiver;
     }
 
     ESFunction bind(ESInstance instance) {
-        Environment environment = new Environment(closure);
-        environment.define("this", instance);
-        return new ESFunction(name, declaration, environment, isInitializer);
+        return new ESFunction(name, declaration, closure, isInitializer, instance);
     }
 
         @Override
@@ -34,17 +38,22 @@ class ESFunction implements ESCallable {
 
         @Override
         public Object call (Interpreter interpreter, List <Object> arguments){
-            Environment environment = new Environment(closure);
+            return invoke(interpreter, receiver, arguments);
+        }
+
+        // Calls the method with the given receiver, without binding it first.
+        Object invoke(Interpreter interpreter, ESInstance receiver, List<Object> arguments) {
+            Environment environment = new Environment(closure, declaration.scopeSize);
             for (int i = 0; i < declaration.params.size(); i++) {
-                environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+                environment.define(i, arguments.get(i));
             }
-            try {
-                interpreter.executeBlock(declaration.body, environment);
-            } catch (Return returnValue) {
-                if (isInitializer) return closure.getAt(0, "this");
-                return returnValue.value;
+            if (declaration.thisSlot != -1) environment.define(declaration.thisSlot, receiver);
+            Completion completion = interpreter.executeBlock(declaration.body, environment);
+            if (isInitializer) {
+                if (completion == Completion.RETURN) interpreter.takeReturnValue();
+                return receiver;
             }
-            if (isInitializer) return closure.getAt(0, "this");
+            if (completion == Completion.RETURN) return interpreter.takeReturnValue();
             return null;
         }
 
@@ -3,24 +3,67 @@ package com.linkbyte.everscript;
 import java.util.*;
 
 class ESInstance {
+  private static final Object[] NO_FIELDS = new Object[0];
+
   protected ESClass klass;
-  private final Map<String, Object> fields = new HashMap<>();
+  private Shape shape;
+  private Object[] storage;
 
   ESInstance(ESClass klass) {
     this.klass = klass;
+    if (klass != null) {
+      this.shape = klass.rootShape;
+      this.storage = klass.fieldCount == 0 ? NO_FIELDS : new Object[klass.fieldCount];
+    } else {
+      this.shape = new Shape();
+      this.storage = NO_FIELDS;
+    }
   }
 
   Object get(Token name) {
-    if (fields.containsKey(name.lexeme)) {
-      return fields.get(name.lexeme);
-    }
-    ESFunction method = klass.findMethod(this, name.lexeme);
+    int offset = shape.offset(name.lexeme);
+    if (offset != -1) return storage[offset];
+    return bind(name, klass.findMethod(name.lexeme));
+  }
+
+  Object get(Token name, InlineCache cache) {
+    int offset = cache.offset(shape, name.lexeme);
+    if (offset != -1) return storage[offset];
+    return bind(name, cache.lookup(klass, name.lexeme));
+  }
+
+  // The method a call through this site would run, or null when a field shadows it.
+  ESFunction method(Token name, InlineCache cache) {
+    if (cache.offset(shape, name.lexeme) != -1) return null;
+    return cache.lookup(klass, name.lexeme);
+  }
+
+  private Object bind(Token name, ESFunction method) {
     if (method != null) return method.bind(this);
     throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
   }
 
   void set(Token name, Object value) {
-    fields.put(name.lexeme, value);
+    set(name, shape.offset(name.lexeme), value);
+  }
+
+  void set(Token name, InlineCache cache, Object value) {
+    set(name, cache.offset(shape, name.lexeme), value);
+  }
+
+  private void set(Token name, int offset, Object value) {
+    if (offset == -1) {
+      offset = shape.size;
+      shape = shape.with(name.lexeme);
+      if (offset == storage.length) {
+        storage = Arrays.copyOf(storage, shape.size);
+      }
+      // Presize the storage of later instances to what this one ended up needing.
+      if (klass != null && shape.size > klass.fieldCount) {
+        klass.fieldCount = shape.size;
+      }
+    }
+    storage[offset] = value;
   }
 
   @Override
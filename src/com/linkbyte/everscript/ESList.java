@@ -0,0 +1,296 @@
+package com.linkbyte.everscript;
+
+import java.util.*;
+
+// The native List type: a growable array, so indexing is O(1) and appending is amortized O(1).
+class ESList implements ESIndexable {
+    private static final Object[] EMPTY = {};
+    private static final Map<String, NativeMethod<ESList>> METHODS = new HashMap<>();
+
+    private Object[] elements = EMPTY;
+    private int size = 0;
+
+    static final ESCallable CONSTRUCTOR = new ESCallable() {
+        @Override
+        public int arity() {
+            return 0;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            return new ESList();
+        }
+
+        @Override
+        public String toString() {
+            return "<native fn>";
+        }
+    };
+
+    static {
+        METHODS.put("add", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                list.add(arguments.get(0));
+                return null;
+            }
+        });
+        METHODS.put("addAll", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object other = arguments.get(0);
+                if (other instanceof ESList) {
+                    ESList items = (ESList) other;
+                    list.addAll(items.elements, items.size);
+                } else if (other instanceof ESArray) {
+                    Object[] items = ((ESArray) other).elements.toArray();
+                    list.addAll(items, items.length);
+                } else {
+                    throw new RuntimeError(name, "Expected a list or an array.");
+                }
+                return null;
+            }
+        });
+        METHODS.put("get", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                return list.get(name, arguments.get(0));
+            }
+        });
+        METHODS.put("set", new NativeMethod<>(2) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                list.set(name, arguments.get(0), arguments.get(1));
+                return null;
+            }
+        });
+        METHODS.put("remove", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                return list.remove(list.index(name, arguments.get(0)));
+            }
+        });
+        METHODS.put("removeValue", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                int i = list.indexOf(interpreter, arguments.get(0));
+                return i == -1 ? null : list.remove(i);
+            }
+        });
+        METHODS.put("indexOf", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                return (double) list.indexOf(interpreter, arguments.get(0));
+            }
+        });
+        METHODS.put("contains", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                return list.indexOf(interpreter, arguments.get(0)) != -1;
+            }
+        });
+        METHODS.put("clear", new NativeMethod<>(0) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                Arrays.fill(list.elements, 0, list.size, null);
+                list.size = 0;
+                return null;
+            }
+        });
+        // Returns the first value the function returns that isn't null.
+        METHODS.put("forEach", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object function = arguments.get(0);
+                for (int i = 0; i < list.size; i++) {
+                    Object result = interpreter.call(function, Collections.singletonList(list.elements[i]), name);
+                    if (result != null) return result;
+                }
+                return null;
+            }
+        });
+        METHODS.put("map", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object function = arguments.get(0);
+                ESList result = new ESList();
+                result.elements = new Object[list.size];
+                for (int i = 0; i < list.size; i++) {
+                    result.elements[result.size++] = interpreter.call(function, Collections.singletonList(list.elements[i]), name);
+                }
+                return result;
+            }
+        });
+        METHODS.put("filter", new NativeMethod<>(1) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object function = arguments.get(0);
+                ESList result = new ESList();
+                for (int i = 0; i < list.size; i++) {
+                    Object value = list.elements[i];
+                    if (interpreter.isTruthy(interpreter.call(function, Collections.singletonList(value), name))) result.add(value);
+                }
+                return result;
+            }
+        });
+        // The function is called with each value and the result so far, starting from the second argument.
+        METHODS.put("reduce", new NativeMethod<>(2) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object function = arguments.get(0);
+                Object result = arguments.get(1);
+                for (int i = 0; i < list.size; i++) {
+                    result = interpreter.call(function, Arrays.asList(list.elements[i], result), name);
+                }
+                return result;
+            }
+        });
+        METHODS.put("getSize", new NativeMethod<>(0) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                return (double) list.size;
+            }
+        });
+        METHODS.put("isEmpty", new NativeMethod<>(0) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                return list.size == 0;
+            }
+        });
+        METHODS.put("iterator", new NativeMethod<>(0) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                return new Iterator(list);
+            }
+        });
+        METHODS.put("toArray", new NativeMethod<>(0) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                return new ESArray(Arrays.copyOf(list.elements, list.size));
+            }
+        });
+        METHODS.put("toString", new NativeMethod<>(0) {
+            @Override
+            Object call(ESList list, Interpreter interpreter, List<Object> arguments, Token name) {
+                return list.toString();
+            }
+        });
+    }
+
+    static NativeMethod<ESList> method(Token name) {
+        NativeMethod<ESList> method = METHODS.get(name.lexeme);
+        if (method != null) return method;
+        throw new RuntimeError(name, "No such method '" + name.lexeme + "' exists in 'List' type.");
+    }
+
+    ESCallable getMethod(Token name) {
+        return method(name).bind(this, name);
+    }
+
+    private void add(Object value) {
+        if (size == elements.length) grow(size + 1);
+        elements[size++] = value;
+    }
+
+    private void addAll(Object[] values, int count) {
+        if (size + count > elements.length) grow(size + count);
+        System.arraycopy(values, 0, elements, size, count);
+        size += count;
+    }
+
+    private void grow(int capacity) {
+        elements = Arrays.copyOf(elements, Math.max(capacity, Math.max(8, elements.length + (elements.length >> 1))));
+    }
+
+    private Object remove(int i) {
+        Object value = elements[i];
+        System.arraycopy(elements, i + 1, elements, i, size - i - 1);
+        elements[--size] = null;
+        return value;
+    }
+
+    private int indexOf(Interpreter interpreter, Object value) {
+        for (int i = 0; i < size; i++) {
+            if (interpreter.isEqual(elements[i], value)) return i;
+        }
+        return -1;
+    }
+
+    // Walks a list by index. Like the list's own methods, its methods are shared by every iterator.
+    static final class Iterator {
+        private static final Map<String, NativeMethod<Iterator>> METHODS = new HashMap<>();
+
+        private final ESList list;
+        private int next = 0;
+
+        Iterator(ESList list) {
+            this.list = list;
+        }
+
+        static {
+            METHODS.put("hasNext", new NativeMethod<>(0) {
+                @Override
+                Object call(Iterator iterator, Interpreter interpreter, List<Object> arguments, Token name) {
+                    return iterator.next < iterator.list.size;
+                }
+            });
+            METHODS.put("next", new NativeMethod<>(0) {
+                @Override
+                Object call(Iterator iterator, Interpreter interpreter, List<Object> arguments, Token name) {
+                    return iterator.next < iterator.list.size ? iterator.list.elements[iterator.next++] : null;
+                }
+            });
+        }
+
+        static NativeMethod<Iterator> method(Token name) {
+            NativeMethod<Iterator> method = METHODS.get(name.lexeme);
+            if (method != null) return method;
+            throw new RuntimeError(name, "No such method '" + name.lexeme + "' exists in 'ListIterator' type.");
+        }
+
+        ESCallable getMethod(Token name) {
+            return method(name).bind(this, name);
+        }
+
+        @Override
+        public String toString() {
+            return "<native instance ListIterator>";
+        }
+    }
+
+    @Override
+    public Object get(Token token, Object index) {
+        return elements[index(token, index)];
+    }
+
+    @Override
+    public void set(Token token, Object index, Object item) {
+        elements[index(token, index)] = item;
+    }
+
+    @Override
+    public int length() {
+        return size;
+    }
+
+    private int index(Token token, Object index) {
+        if (index instanceof Double) {
+            double i = (Double) index;
+            if (i == Math.floor(i)) {
+                int n = (i < 0) ? (int) i + size : (int) i;
+                if (n < 0 || n >= size) throw new RuntimeError(token, "List index out of bounds.");
+                return n;
+            }
+        }
+        throw new RuntimeError(token, "List index must be an integer value.");
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner string = new StringJoiner(", ", "{ ", " }");
+        for (int i = 0; i < size; i++) {
+            string.add(Interpreter.stringify(elements[i]));
+        }
+        return string.toString();
+    }
+}
@@ -0,0 +1,234 @@
+package com.linkbyte.everscript;
+
+import java.util.*;
+
+// An array that can only hold numbers, stored unboxed in a double[]. A million elements take
+// 8MB instead of a boxed Double and a reference each, and reads in numeric code skip the box.
+class ESNumberArray implements ESIndexable {
+    private static final Map<String, NativeMethod<ESNumberArray>> METHODS = new HashMap<>();
+
+    private double[] values;
+    private int size;
+
+    // NumberArray(n) makes n zeroes, NumberArray(array) copies an array of numbers.
+    static final ESCallable CONSTRUCTOR = new ESCallable() {
+        private final Token name = new Token(SourceFile.NONE, TokenType.IDENTIFIER, "NumberArray", null, 0, 0);
+
+        @Override
+        public int arity() {
+            return 1;
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            return call(interpreter, arguments, name);
+        }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments, Token paren) {
+            Object argument = arguments.get(0);
+            if (argument instanceof Double) {
+                double length = (Double) argument;
+                if (length < 0 || length != Math.floor(length)) throw new RuntimeError(paren, "NumberArray length must be a non-negative integer.");
+                return new ESNumberArray(new double[(int) length], (int) length);
+            }
+            if (argument instanceof ESArray) return of(paren, ((ESArray) argument).elements);
+            if (argument instanceof ESNumberArray) {
+                ESNumberArray array = (ESNumberArray) argument;
+                return new ESNumberArray(Arrays.copyOf(array.values, array.size), array.size);
+            }
+            throw new RuntimeError(paren, "NumberArray expects a length or an array of numbers.");
+        }
+
+        @Override
+        public String toString() {
+            return "<native fn>";
+        }
+    };
+
+    ESNumberArray(double[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    static ESNumberArray of(Token token, List<Object> elements) {
+        double[] values = new double[elements.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = number(token, elements.get(i));
+        }
+        return new ESNumberArray(values, values.length);
+    }
+
+    static {
+        METHODS.put("length", new NativeMethod<>(0) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                return (double) array.size;
+            }
+        });
+        METHODS.put("push", new NativeMethod<>(1) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                double value = number(name, arguments.get(0));
+                if (array.size == array.values.length) {
+                    array.values = Arrays.copyOf(array.values, Math.max(8, array.size + (array.size >> 1)));
+                }
+                array.values[array.size++] = value;
+                return null;
+            }
+        });
+        METHODS.put("fill", new NativeMethod<>(1) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Arrays.fill(array.values, 0, array.size, number(name, arguments.get(0)));
+                return array;
+            }
+        });
+        METHODS.put("sum", new NativeMethod<>(0) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                double sum = 0;
+                for (int i = 0; i < array.size; i++) sum += array.values[i];
+                return sum;
+            }
+        });
+        METHODS.put("min", new NativeMethod<>(0) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                if (array.size == 0) return null;
+                double min = array.values[0];
+                for (int i = 1; i < array.size; i++) min = Math.min(min, array.values[i]);
+                return min;
+            }
+        });
+        METHODS.put("max", new NativeMethod<>(0) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                if (array.size == 0) return null;
+                double max = array.values[0];
+                for (int i = 1; i < array.size; i++) max = Math.max(max, array.values[i]);
+                return max;
+            }
+        });
+        METHODS.put("map", new NativeMethod<>(1) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object function = arguments.get(0);
+                double[] result = new double[array.size];
+                for (int i = 0; i < array.size; i++) {
+                    result[i] = number(name, interpreter.call(function, Collections.singletonList(array.values[i]), name));
+                }
+                return new ESNumberArray(result, result.length);
+            }
+        });
+        // Like the other reduces, the function is called with each value and the result so far.
+        METHODS.put("reduce", new NativeMethod<>(2) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object function = arguments.get(0);
+                Object result = arguments.get(1);
+                for (int i = 0; i < array.size; i++) {
+                    result = interpreter.call(function, Arrays.asList(array.values[i], result), name);
+                }
+                return result;
+            }
+        });
+        METHODS.put("slice", new NativeMethod<>(2) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                int from = array.bound(name, arguments.get(0));
+                int to = Math.max(from, array.bound(name, arguments.get(1)));
+                return new ESNumberArray(Arrays.copyOfRange(array.values, from, to), to - from);
+            }
+        });
+        METHODS.put("indexOf", new NativeMethod<>(1) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object value = arguments.get(0);
+                if (!(value instanceof Double)) return -1.0;
+                for (int i = 0; i < array.size; i++) {
+                    if (array.values[i] == (Double) value) return (double) i;
+                }
+                return -1.0;
+            }
+        });
+        METHODS.put("sort", new NativeMethod<>(0) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Arrays.sort(array.values, 0, array.size);
+                return array;
+            }
+        });
+        METHODS.put("toArray", new NativeMethod<>(0) {
+            @Override
+            Object call(ESNumberArray array, Interpreter interpreter, List<Object> arguments, Token name) {
+                Object[] elements = new Object[array.size];
+                for (int i = 0; i < array.size; i++) elements[i] = array.values[i];
+                return new ESArray(elements);
+            }
+        });
+    }
+
+    static NativeMethod<ESNumberArray> method(Token name) {
+        NativeMethod<ESNumberArray> method = METHODS.get(name.lexeme);
+        if (method != null) return method;
+        throw new RuntimeError(name, "No such method '" + name.lexeme + "' exists in 'NumberArray' type.");
+    }
+
+    ESCallable getMethod(Token name) {
+        return method(name).bind(this, name);
+    }
+
+    // Reads an element without boxing it, for the interpreter's numeric fast path.
+    double getNumber(Token token, Object index) {
+        return values[indexToInteger(token, index)];
+    }
+
+    @Override
+    public Object get(Token token, Object index) {
+        return values[indexToInteger(token, index)];
+    }
+
+    @Override
+    public void set(Token token, Object index, Object item) {
+        values[indexToInteger(token, index)] = number(token, item);
+    }
+
+    @Override
+    public int length() {
+        return size;
+    }
+
+    private static double number(Token token, Object value) {
+        if (value instanceof Double) return (Double) value;
+        throw new RuntimeError(token, "NumberArray elements must be numbers.");
+    }
+
+    private int bound(Token token, Object index) {
+        if (!(index instanceof Double)) throw new RuntimeError(token, "Array index must be an integer value.");
+        int i = ((Double) index).intValue();
+        if (i < 0) i += size;
+        return Math.max(0, Math.min(i, size));
+    }
+
+    private int indexToInteger(Token token, Object index) {
+        if (index instanceof Double) {
+            double i = (Double) index;
+            if (i == Math.floor(i)) {
+                int n = (i < 0) ? (int) i + size : (int) i;
+                if (n < 0 || n >= size) throw new RuntimeError(token, "Array index out of bounds.");
+                return n;
+            }
+        }
+        throw new RuntimeError(token, "Array index must be an integer value.");
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner string = new StringJoiner(", ", "[ ", " ]");
+        for (int i = 0; i < size; i++) {
+            string.add(Interpreter.stringify(values[i]));
+        }
+        return string.toString();
+    }
+}
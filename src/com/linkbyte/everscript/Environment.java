@@ -3,39 +3,100 @@ package com.linkbyte.everscript;
 import java.util.*;
 
 class Environment {
+  // Slots tagged with NUMBER keep their value unboxed in numbers.
+  private static final Object NUMBER = new Object();
+
+  // Holds one global. A name keeps its cell for the life of the environment and redefining it
+  // only replaces the value, so a call site that has found a cell can keep reading it.
+  static final class Cell {
+    final Environment owner;
+    Object value;
+
+    Cell(Environment owner) {
+      this.owner = owner;
+    }
+
+    @Override
+    public String toString() {
+      return String.valueOf(value);
+    }
+  }
+
   final Environment enclosing;
-  private final Map<String, Object> values = new HashMap<>();
+  // Only the global environment is keyed by name; local scopes use the slots assigned by the Resolver.
+  private final Map<String, Cell> values;
+  private final Object[] slots;
+  private double[] numbers;
+  // Set on the global environment only; loads native libraries on their first lookup.
+  LibraryLoader libraries;
 
   Environment() {
     enclosing = null;
+    values = new HashMap<>();
+    slots = null;
   }
 
+  // A scope of globals under enclosing. The LibraryLoader runs each native library in one, so
+  // the library sees its own classes first and everything else in the globals.
   Environment(Environment enclosing) {
     this.enclosing = enclosing;
+    values = new HashMap<>();
+    slots = null;
+  }
+
+  Environment(Environment enclosing, int size) {
+    this.enclosing = enclosing;
+    this.values = null;
+    this.slots = new Object[size];
   }
 
   Object get(Token name) {
-    if (values.containsKey(name.lexeme)) {
-      return values.get(name.lexeme);
-    }
-    if (enclosing != null) return enclosing.get(name);
-    throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
+    return cell(name).value;
   }
 
   void assign(Token name, Object value) {
-    if (values.containsKey(name.lexeme)) {
-      values.put(name.lexeme, value);
-      return;
-    }
-    if (enclosing != null) {
-      enclosing.assign(name, value);
-      return;
+    cell(name).value = value;
+  }
+
+  Cell cell(Token name) {
+    Cell cell = values.get(name.lexeme);
+    if (cell != null) return cell;
+    if (enclosing != null) return enclosing.cell(name);
+    if (libraries != null && libraries.loadExporting(name.lexeme)) {
+      return cell(name);
     }
     throw new RuntimeError(name, "Undefined variable '" + name.lexeme + "'.");
   }
 
   void define(String name, Object value) {
-    values.put(name, value);
+    Cell cell = values.get(name);
+    if (cell == null) {
+      cell = new Cell(this);
+      values.put(name, cell);
+    }
+    cell.value = value;
+  }
+
+  // Copies every global of other into this environment.
+  void defineAll(Environment other) {
+    other.values.forEach((name, cell) -> define(name, cell.value));
+  }
+
+  // Copies the globals of other that this environment doesn't define yet.
+  void defineMissing(Environment other) {
+    other.values.forEach((name, cell) -> {
+      if (!values.containsKey(name)) define(name, cell.value);
+    });
+  }
+
+  void define(int slot, Object value) {
+    slots[slot] = value;
+  }
+
+  void defineNumber(int slot, double value) {
+    if (numbers == null) numbers = new double[slots.length];
+    numbers[slot] = value;
+    slots[slot] = NUMBER;
   }
 
   Environment ancestor(int distance) {
@@ -47,17 +108,43 @@ class Environment {
     return environment;
   }
 
-  Object getAt(int distance, String name) {
-    return ancestor(distance).values.get(name);
+  Object getAt(int distance, int slot) {
+    return ancestor(distance).get(slot);
+  }
+
+  double getNumberAt(int distance, int slot) {
+    Environment environment = ancestor(distance);
+    Object value = environment.slots[slot];
+    if (value == NUMBER) return environment.numbers[slot];
+    if (value instanceof Double) return (double) value;
+    throw new UnexpectedResult(value);
+  }
+
+  void assignAt(int distance, int slot, Object value) {
+    ancestor(distance).slots[slot] = value;
+  }
+
+  void assignNumberAt(int distance, int slot, double value) {
+    ancestor(distance).defineNumber(slot, value);
   }
 
-  void assignAt(int distance, Token name, Object value) {
-    ancestor(distance).values.put(name.lexeme, value);
+  // A generic read boxes a number slot once and keeps the box, so reading it again doesn't allocate.
+  private Object get(int slot) {
+    Object value = slots[slot];
+    if (value == NUMBER) slots[slot] = value = numbers[slot];
+    return value;
   }
 
   @Override
   public String toString() {
-    String result = values.toString();
+    String result;
+    if (values != null) {
+      result = values.toString();
+    } else {
+      Object[] copy = new Object[slots.length];
+      for (int i = 0; i < slots.length; i++) copy[i] = slots[i] == NUMBER ? (Object) numbers[i] : slots[i];
+      result = Arrays.toString(copy);
+    }
     if (enclosing != null) {
       result += " -> " + enclosing.toString();
     }
@@ -35,10 +35,19 @@ abstract class Expr {
     }
 
     final Token name;
-    final Expr value;
+    Expr value;
+    int depth = -1;
+    int slot = -1;
+    Environment.Cell cell;
   }
 
   static class Binary extends Expr {
+    // Operand types seen so far; a node only ever moves down this list.
+    static final int UNINITIALIZED = 0;
+    static final int NUMBERS = 1;
+    static final int STRINGS = 2;
+    static final int GENERIC = 3;
+
     Binary(Expr left, Token operator, Expr right) {
       this.left = left;
       this.operator = operator;
@@ -50,9 +59,10 @@ abstract class Expr {
       return visitor.visitBinaryExpr(this);
     }
 
-    final Expr left;
+    Expr left;
     final Token operator;
-    final Expr right;
+    Expr right;
+    int specialization = UNINITIALIZED;
   }
 
   static class Call extends Expr {
@@ -67,7 +77,7 @@ abstract class Expr {
       return visitor.visitCallExpr(this);
     }
 
-    final Expr callee;
+    Expr callee;
     final Token paren;
     final List<Expr> arguments;
   }
@@ -84,9 +94,10 @@ abstract class Expr {
       return visitor.visitGetExpr(this);
     }
 
-    final Expr object;
+    Expr object;
     final Token name;
     final Token operator;
+    final InlineCache cache = new InlineCache();
   }
 
   static class Grouping extends Expr {
@@ -127,9 +138,9 @@ abstract class Expr {
       return visitor.visitLogicalExpr(this);
     }
 
-    final Expr left;
+    Expr left;
     final Token operator;
-    final Expr right;
+    Expr right;
   }
 
   static class Set extends Expr {
@@ -144,15 +155,17 @@ abstract class Expr {
       return visitor.visitSetExpr(this);
     }
 
-    final Expr object;
+    Expr object;
     final Token name;
-    final Expr value;
+    Expr value;
+    final InlineCache cache = new InlineCache();
   }
 
   static class Super extends Expr {
     Super(Token keyword, Token method) {
       this.keyword = keyword;
       this.method = method;
+      this.receiver = new This(new Token(keyword.file, TokenType.THIS, "this", null, keyword.line, keyword.col));
     }
 
     @Override
@@ -162,6 +175,9 @@ abstract class Expr {
 
     final Token keyword;
     final Token method;
+    final This receiver;
+    int depth = -1;
+    int slot = -1;
   }
 
   static class This extends Expr {
@@ -175,6 +191,8 @@ abstract class Expr {
     }
 
     final Token keyword;
+    int depth = -1;
+    int slot = -1;
   }
 
   static class Unary extends Expr {
@@ -189,7 +207,7 @@ abstract class Expr {
     }
 
     final Token operator;
-    final Expr right;
+    Expr right;
   }
 
   static class Variable extends Expr {
@@ -203,6 +221,11 @@ abstract class Expr {
     }
 
     final Token name;
+    // Where the Resolver found the name: depth scopes out, in slot. A depth of -1 means the
+    // name is global, and cell is the global it was last found in; see Interpreter.global.
+    int depth = -1;
+    int slot = -1;
+    Environment.Cell cell;
   }
 
   static class Array extends Expr {
@@ -232,9 +255,9 @@ abstract class Expr {
       return visitor.visitIndexGetExpr(this);
     }
 
-    final Expr indexee;
+    Expr indexee;
     final Token bracket;
-    final Expr index;
+    Expr index;
   }
 
   static class IndexSet extends Expr {
@@ -250,10 +273,10 @@ abstract class Expr {
       return visitor.visitIndexSetExpr(this);
     }
 
-    final Expr indexee;
+    Expr indexee;
     final Token bracket;
-    final Expr index;
-    final Expr value;
+    Expr index;
+    Expr value;
   }
 
   static class Function extends Expr {
@@ -266,6 +289,9 @@ abstract class Expr {
 
     final List<Token> params;
     final List<Stmt> body;
+    int scopeSize;
+    // Methods keep their receiver in their own scope.
+    int thisSlot = -1;
   }
 
   static class Dictionary extends Expr {
@@ -278,6 +304,7 @@ abstract class Expr {
 
     final Token name;
     final Map<Token, Object> properties;
+    int slot = -1;
   }
 
   abstract <R> R accept(Visitor<R> visitor);
@@ -0,0 +1,67 @@
+package com.linkbyte.everscript;
+
+// Per access site cache of field offsets keyed by Shape and method lookups keyed by class
+// identity. Shapes and method tables never change once created, so an entry (including a
+// miss) stays valid forever. A site keeps the offsets of up to SIZE shapes and the methods of
+// up to SIZE classes; once either is full, a new entry replaces the oldest, so a site whose
+// classes change keeps hitting instead of giving up. Objects built by different constructors
+// or with their fields set in a different order have different shapes, so a site reading the
+// same field from a few of them no longer misses on every alternation.
+//
+// Parallel runs a function's body on several worker threads, so a site can be hit from
+// several threads. Entries are immutable and only ever replaced, so a racing reader sees
+// either the old or the new entry, never a half-written one.
+class InlineCache {
+  private static final int SIZE = 4;
+
+  private static final class Field {
+    final Shape shape;
+    final int offset;
+
+    Field(Shape shape, int offset) {
+      this.shape = shape;
+      this.offset = offset;
+    }
+  }
+
+  private static final class Method {
+    final ESClass klass;
+    final ESFunction method;
+
+    Method(ESClass klass, ESFunction method) {
+      this.klass = klass;
+      this.method = method;
+    }
+  }
+
+  private final Field[] fields = new Field[SIZE];
+  private final Method[] methods = new Method[SIZE];
+  // The entries the next misses replace. Racing threads may both write the same entry; either
+  // one is a valid entry, and the other is simply looked up again.
+  private int nextField;
+  private int nextMethod;
+
+  int offset(Shape shape, String name) {
+    for (Field entry : fields) {
+      if (entry != null && entry.shape == shape) return entry.offset;
+    }
+
+    int offset = shape.offset(name);
+    int i = nextField;
+    fields[i] = new Field(shape, offset);
+    nextField = (i + 1) % SIZE;
+    return offset;
+  }
+
+  ESFunction lookup(ESClass klass, String name) {
+    for (Method entry : methods) {
+      if (entry != null && entry.klass == klass) return entry.method;
+    }
+
+    ESFunction method = klass.findMethod(name);
+    int i = nextMethod;
+    methods[i] = new Method(klass, method);
+    nextMethod = (i + 1) % SIZE;
+    return method;
+  }
+}
@@ -1,15 +1,21 @@
 package com.linkbyte.everscript;
 
 import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 import java.util.stream.*;
 
-class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    final Environment globals = new Environment();
-    private final Map<Expr, Integer> locals = new HashMap<>();
+class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Completion> {
+    final Context context;
+    // Swapped for a library's own scope while the LibraryLoader runs it.
+    Environment globals = new Environment();
     private Environment environment = globals;
+    private Object returnValue;
+
+
+    Interpreter(Context context) {
+        this.context = context;
 
-    Interpreter() {
         globals.define("clock", new ESCallable() {
             @Override
             public int arity() {
@@ -48,7 +54,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
             @Override
             public Object call(Interpreter interpreter, List<Object> arguments) {
-                System.out.print(stringify(arguments.get(0)));
+                interpreter.context.out.print(stringify(arguments.get(0)));
                 return null;
             }
         });
@@ -61,10 +67,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
             @Override
             public Object call(Interpreter interpreter, List<Object> arguments) {
-                System.out.println(stringify(arguments.get(0)));
+                interpreter.context.out.println(stringify(arguments.get(0)));
                 return null;
             }
         });
+
+        globals.define("List", ESList.CONSTRUCTOR);
+        globals.define("NumberArray", ESNumberArray.CONSTRUCTOR);
     }
 
     private String checkType(Object value) {
@@ -74,19 +83,43 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         else if (value instanceof ESFunction) return "function";
         else if (value instanceof ESClass) return "class";
         else if (value instanceof ESArray) return "array";
+        else if (value instanceof ESList) return "list";
+        else if (value instanceof ESNumberArray) return "number array";
         else if (value instanceof ESDictionary) return "object";
         else if (value instanceof ESInstance) return "instance";
-        else if (value instanceof ESNativeInstance) return "native instance";
+        else if (value instanceof ESNativeInstance || value instanceof ESList.Iterator) return "native instance";
         return null;
     }
 
+    // A separate interpreter for running a function on another thread. It has its own context
+    // and a copy of the current globals, so the function sees the same names, but anything it
+    // defines or assigns globally only changes the copy. The native libraries are loaded here
+    // first and shared, so an Error thrown by a worker is an instance of the caller's classes.
+    Interpreter fork() {
+        try {
+            globals.libraries.loadClasses();
+        } catch (IOException e) {
+            throw new NativeError("Could not load the native libraries.");
+        }
+        Context worker = new Context(context.out);
+        worker.interpreter.globals.libraries.shareLoaded(globals.libraries);
+        worker.interpreter.globals.defineAll(globals);
+        return worker.interpreter;
+    }
+
+    // Runs top-level code. Imports and native libraries can be loaded in the middle of a
+    // script, so the statements always run against the globals rather than the current scope.
     void interpret(List<Stmt> statements) {
+        Environment previous = environment;
+        environment = globals;
         try {
             for (Stmt statement : statements) {
                 execute(statement);
             }
         } catch (RuntimeError error) {
-            EverScript.runtimeError(error);
+            context.runtimeError(error);
+        } finally {
+            environment = previous;
         }
     }
 
@@ -94,35 +127,43 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return expr.accept(this);
     }
 
-    private void execute(Stmt stmt) {
-        stmt.accept(this);
+    private Completion execute(Stmt stmt) {
+        return stmt.accept(this);
     }
 
-    void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
+    private void define(Token name, int slot, Object value) {
+        if (slot == -1) globals.define(name.lexeme, value);
+        else environment.define(slot, value);
     }
 
-    void executeBlock(List<Stmt> statements, Environment environment) {
+    Completion executeBlock(List<Stmt> statements, Environment environment) {
         Environment previous = this.environment;
         try {
             this.environment = environment;
             for (Stmt statement : statements) {
-                execute(statement);
+                if (execute(statement) == Completion.RETURN) return Completion.RETURN;
             }
+            return Completion.NORMAL;
         } finally {
             this.environment = previous;
         }
     }
 
+    // Hands over the value of the last executed return statement.
+    Object takeReturnValue() {
+        Object value = returnValue;
+        returnValue = null;
+        return value;
+    }
+
     @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
-        return null;
+    public Completion visitBlockStmt(Stmt.Block stmt) {
+        return executeBlock(stmt.statements, new Environment(this.environment, stmt.scopeSize));
     }
 
     @Override
-    public Void visitClassStmt(Stmt.Class stmt) {
-        environment.define(stmt.name.lexeme, null);
+    public Completion visitClassStmt(Stmt.Class stmt) {
+        define(stmt.name, stmt.slot, null);
         Object superclass = null;
 
         if (stmt.superclass != null) {
@@ -130,8 +171,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             if (!(superclass instanceof ESClass)) {
                 throw new RuntimeError(stmt.name, "The inherited class must be a class.");
             }
-            environment = new Environment(environment);
-            environment.define("super", superclass);
+            environment = new Environment(environment, 1);
+            environment.define(0, superclass);
         }
 
         Map<String, ESFunction> methods = new HashMap<>();
@@ -149,27 +190,27 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         if (superclass != null) {
             environment = environment.enclosing;
         }
-        environment.assign(stmt.name, new ESClass(stmt.name.lexeme, (ESClass) superclass, methods, staticMethods));
-        return null;
+        define(stmt.name, stmt.slot, new ESClass(this, stmt.name.lexeme, (ESClass) superclass, methods, staticMethods));
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitEnumStmt(Stmt.Enum stmt) {
+    public Completion visitEnumStmt(Stmt.Enum stmt) {
         ESEnum _enum = new ESEnum(stmt.name.lexeme, stmt.properties);
-        environment.define(stmt.name.lexeme, _enum);
-        return null;
+        define(stmt.name, stmt.slot, _enum);
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitThrowStmt(Stmt.Throw stmt) {
+    public Completion visitThrowStmt(Stmt.Throw stmt) {
         Object thrown = evaluate(stmt.thrown);
-        Token runtimeError = new Token(stmt.keyword.directory, stmt.keyword.file, TokenType.IDENTIFIER, "Error", null, stmt.keyword.line, stmt.keyword.col);
+        Token runtimeError = new Token(stmt.keyword.file, TokenType.IDENTIFIER, "Error", null, stmt.keyword.line, stmt.keyword.col);
 
         if (!(thrown instanceof ESInstance && ((ESInstance) thrown).klass().inherits(runtimeError))) {
             throw new RuntimeError(stmt.keyword, "Only objects that inherit 'Error' can be thrown.");
         }
 
-        Token messageToken = new Token(stmt.keyword.directory, stmt.keyword.file, TokenType.IDENTIFIER, "message", null, 0, 0);
+        Token messageToken = new Token(stmt.keyword.file, TokenType.IDENTIFIER, "message", null, 0, 0);
         Object message = ((ESCallable) ((ESInstance) thrown).get(messageToken)).call(this, new ArrayList<>());
 
         throw new UserRuntimeError((ESInstance) thrown, stringify(message), stmt.keyword);
@@ -186,52 +227,63 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visitTryStmt(Stmt.Try stmt) {
+    public Completion visitTryStmt(Stmt.Try stmt) {
+        Completion completion = Completion.NORMAL;
         try {
-            execute(stmt.body);
+            completion = execute(stmt.body);
         } catch (RuntimeError error) {
             if (error instanceof RuntimeError.InterpreterRuntimeError && !((RuntimeError.InterpreterRuntimeError) error).catchable) throw error;
 
             for (Stmt.Catch catchStmt : stmt.catches) {
                 if (errorMatches(catchStmt, error)) {
                     Environment enclosing = environment;
-                    environment = new Environment(enclosing);
+                    environment = new Environment(enclosing, 1);
 
                     if (error instanceof UserRuntimeError) {
-                        environment.define(catchStmt.identifier.lexeme, ((UserRuntimeError) error).instance);
+                        environment.define(0, ((UserRuntimeError) error).instance);
                     } else {
                         Map<String, ESFunction> methods = new HashMap<>();
                         List<Stmt> body = new ArrayList<>();
-                        Token name = new Token("", "", TokenType.IDENTIFIER, "message", null, 0, 0);
+                        Token name = new Token(SourceFile.NONE, TokenType.IDENTIFIER, "message", null, 0, 0);
                         List<Token> params = new ArrayList<>();
-                        body.add(new Stmt.Return(new Token("", "", TokenType.RETURN, "return", null, 0, 0), new Expr.Literal(error.getMessage())));
+                        body.add(new Stmt.Return(new Token(SourceFile.NONE, TokenType.RETURN, "return", null, 0, 0), new Expr.Literal(error.getMessage())));
                         Stmt.Function function = new Stmt.Function(name, new Expr.Function(params, body));
                         methods.put("message", new ESFunction(name.lexeme, function.function, environment, false));
                         body = new ArrayList<>();
-                        name = new Token("", "", TokenType.IDENTIFIER, "getType", null, 0, 0);
+                        name = new Token(SourceFile.NONE, TokenType.IDENTIFIER, "getType", null, 0, 0);
                         params = new ArrayList<>();
-                        body.add(new Stmt.Return(new Token("", "", TokenType.RETURN, "return", null, 0, 0), new Expr.Literal("RuntimeError")));
+                        body.add(new Stmt.Return(new Token(SourceFile.NONE, TokenType.RETURN, "return", null, 0, 0), new Expr.Literal("RuntimeError")));
                         function = new Stmt.Function(name, new Expr.Function(params, body));
                         methods.put("getType", new ESFunction(name.lexeme, function.function, environment, false));
-                        Token superclass = new Token("", "", TokenType.IDENTIFIER, "RuntimeError", null, catchStmt.identifier.line, catchStmt.identifier.col);
-                        ESClass runtimeError = new ESClass("RuntimeError", (ESClass) globals.get(superclass), methods, new HashMap<>());
+                        Token superclass = new Token(SourceFile.NONE, TokenType.IDENTIFIER, "RuntimeError", null, catchStmt.identifier.line, catchStmt.identifier.col);
+                        ESClass runtimeError = new ESClass(this, "RuntimeError", (ESClass) globals.get(superclass), methods, new HashMap<>());
                         ESInstance errorInstance = new ESInstance(runtimeError);
-                        environment.define(catchStmt.identifier.lexeme, errorInstance);
+                        environment.define(0, errorInstance);
                     }
-                    execute(catchStmt);
+                    completion = execute(catchStmt);
                     environment = enclosing;
+                    if (completion == Completion.RETURN) break;
                 }
             }
         } finally {
-            if (stmt.finallyStmt != null) execute(stmt.finallyStmt);
+            // A return in the finally block overrides both the try result and any pending error.
+            // Otherwise the value returned by the try or catch block is still pending, and calls
+            // made in the finally block mustn't replace it.
+            if (stmt.finallyStmt != null) {
+                Object pending = returnValue;
+                if (execute(stmt.finallyStmt) == Completion.RETURN) {
+                    //noinspection ReturnInsideFinallyBlock
+                    return Completion.RETURN;
+                }
+                returnValue = pending;
+            }
         }
-        return null;
+        return completion;
     }
 
     @Override
-    public Void visitCatchStmt(Stmt.Catch stmt) {
-        execute(stmt.body);
-        return null;
+    public Completion visitCatchStmt(Stmt.Catch stmt) {
+        return execute(stmt.body);
     }
 
     @Override
@@ -245,21 +297,33 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
 
         ESDictionary dictionary = new ESDictionary(expr.name, properties);
-        environment.define(expr.name.lexeme, dictionary);
+        define(expr.name, expr.slot, dictionary);
         return dictionary;
     }
 
     @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
+    public Completion visitExpressionStmt(Stmt.Expression stmt) {
+        // The value of a statement-level assignment is discarded, so a number can be stored without boxing.
+        if (stmt.expression instanceof Expr.Assign && producesNumber(((Expr.Assign) stmt.expression).value)) {
+            Expr.Assign assign = (Expr.Assign) stmt.expression;
+            if (assign.depth != -1) {
+                try {
+                    environment.assignNumberAt(assign.depth, assign.slot, evaluateNumber(assign.value));
+                } catch (UnexpectedResult result) {
+                    environment.assignAt(assign.depth, assign.slot, result.value);
+                }
+                return Completion.NORMAL;
+            }
+        }
         evaluate(stmt.expression);
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
+    public Completion visitFunctionStmt(Stmt.Function stmt) {
         ESFunction function = new ESFunction(stmt.name.lexeme, stmt.function, environment, false);
-        environment.define(stmt.name.lexeme, function);
-        return null;
+        define(stmt.name, stmt.slot, function);
+        return Completion.NORMAL;
     }
 
     @Override
@@ -268,43 +332,53 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     @Override
-    public Void visitIfStmt(Stmt.If stmt) {
+    public Completion visitIfStmt(Stmt.If stmt) {
         if (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.thenBranch);
+            return execute(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
-            execute(stmt.elseBranch);
+            return execute(stmt.elseBranch);
         }
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
+    public Completion visitReturnStmt(Stmt.Return stmt) {
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
 
-        throw new Return(value);
+        returnValue = value;
+        return Completion.RETURN;
     }
 
     @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
+    public Completion visitVarStmt(Stmt.Var stmt) {
+        if (stmt.slot != -1 && producesNumber(stmt.initializer)) {
+            try {
+                environment.defineNumber(stmt.slot, evaluateNumber(stmt.initializer));
+            } catch (UnexpectedResult result) {
+                environment.define(stmt.slot, result.value);
+            }
+            return Completion.NORMAL;
+        }
+
         Object value = null;
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
         }
-        environment.define(stmt.name.lexeme, value);
-        return null;
+        define(stmt.name, stmt.slot, value);
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
+    public Completion visitWhileStmt(Stmt.While stmt) {
         while (isTruthy(evaluate(stmt.condition))) {
-            execute(stmt.body);
+            if (execute(stmt.body) == Completion.RETURN) return Completion.RETURN;
         }
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
-    public Void visitImportStmt(Stmt.Import stmt) {
+    public Completion visitImportStmt(Stmt.Import stmt) {
         Object module = evaluate(stmt.module);
 
         if (!(module instanceof String)) {
@@ -320,7 +394,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                     globals.define(stmt.namespace.lexeme, ESStandardLibrary._System);
                     break;
                 case "Internals":
-                    if (!stmt.keyword.file.startsWith("natives")) {
+                    if (!stmt.keyword.file.directory.startsWith("natives")) {
                         throw new RuntimeError(stmt.keyword, "Sorry, the 'Internals' standard library cannot be exposed to the user.");
                     } else {
                         globals.define(stmt.namespace.lexeme, ESStandardLibrary.Internals);
@@ -331,61 +405,215 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                     break;
             }
 
-            return null;
+            return Completion.NORMAL;
         }
 
-        StringBuilder source = new StringBuilder();
+        Path path;
 
         try {
-            BufferedReader br = new BufferedReader(new FileReader((String) module));
-            String curLine;
-            while ((curLine = br.readLine()) != null) {
-                source.append(curLine).append("\n");
-            }
-        } catch (IOException e) {
+            path = Paths.get(name).toRealPath();
+            if (!context.modules.begin(path, stmt.keyword)) return Completion.NORMAL;
+        } catch (IOException | InvalidPathException e) {
             throw new RuntimeError(stmt.keyword, "There was an error while trying to import '" + module + "'.");
         }
 
-        EverScript.run(name, source.toString());
+        boolean loaded = false;
+        try {
+            loaded = context.load(name, SourceReader.read(path));
+        } catch (IOException e) {
+            throw new RuntimeError(stmt.keyword, "There was an error while trying to import '" + module + "'.");
+        } finally {
+            context.modules.end(path, loaded);
+        }
 
-        return null;
+        return Completion.NORMAL;
     }
 
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
         Object value = evaluate(expr.value);
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
+        if (expr.depth != -1) {
+            environment.assignAt(expr.depth, expr.slot, value);
         } else {
-            globals.assign(expr.name, value);
+            global(expr).value = value;
         }
         return value;
     }
 
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
+        if (expr.specialization == Expr.Binary.NUMBERS) {
+            double left, right;
+            try {
+                left = evaluateNumber(expr.left);
+            } catch (UnexpectedResult result) {
+                return deoptimize(expr, result.value);
+            }
+            try {
+                right = evaluateNumber(expr.right);
+            } catch (UnexpectedResult result) {
+                return deoptimize(expr, left, result.value);
+            }
+            return numberBinary(expr.operator.type, left, right);
+        }
+
         Object left = evaluate(expr.left);
         Object right = evaluate(expr.right);
-        switch (expr.operator.type) {
+
+        switch (expr.specialization) {
+            case Expr.Binary.STRINGS:
+                if (left instanceof String && right instanceof String) {
+                    return (String) left + right;
+                }
+                expr.specialization = Expr.Binary.GENERIC;
+                break;
+            case Expr.Binary.UNINITIALIZED:
+                expr.specialization = specialize(expr.operator.type, left, right);
+                break;
+        }
+        return binary(expr.operator, left, right);
+    }
+
+    private int specialize(TokenType operator, Object left, Object right) {
+        switch (operator) {
+            case PLUS:
+                if (left instanceof String && right instanceof String) return Expr.Binary.STRINGS;
+                return numbers(left, right);
+            case MINUS:
+            case STAR:
+            case SLASH:
+            case MODULO:
+            case EXPONENTIATION:
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                return numbers(left, right);
+            default:
+                return Expr.Binary.GENERIC;
+        }
+    }
+
+    private int numbers(Object left, Object right) {
+        return left instanceof Double && right instanceof Double ? Expr.Binary.NUMBERS : Expr.Binary.GENERIC;
+    }
+
+    // Evaluates the right operand itself instead of leaving that to the caller's catch block, where
+    // the JIT would inline a whole generic evaluation into every unboxed path that never needs it.
+    private Object deoptimize(Expr.Binary expr, Object left) {
+        return deoptimize(expr, left, evaluate(expr.right));
+    }
+
+    private Object deoptimize(Expr.Binary expr, Object left, Object right) {
+        expr.specialization = Expr.Binary.GENERIC;
+        return binary(expr.operator, left, right);
+    }
+
+    // Evaluates an expression that is expected to be a number without boxing it. Anything else is
+    // handed back through UnexpectedResult, so the caller never has to evaluate the expression twice.
+    private double evaluateNumber(Expr expr) {
+        if (expr instanceof Expr.Variable) return variableNumber((Expr.Variable) expr);
+        if (expr instanceof Expr.Binary && producesNumber(expr)) return binaryNumber((Expr.Binary) expr);
+        if (expr instanceof Expr.Literal) return number(((Expr.Literal) expr).value);
+        if (expr instanceof Expr.Grouping) return evaluateNumber(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.IndexGet) return indexNumber((Expr.IndexGet) expr);
+        return number(evaluate(expr));
+    }
+
+    private double indexNumber(Expr.IndexGet expr) {
+        Object indexee = evaluate(expr.indexee);
+        Object index = evaluate(expr.index);
+        if (indexee instanceof ESNumberArray) return ((ESNumberArray) indexee).getNumber(expr.bracket, index);
+        return number(indexee instanceof ESIndexable ? ((ESIndexable) indexee).get(expr.bracket, index) : null);
+    }
+
+    private double variableNumber(Expr.Variable expr) {
+        if (expr.depth == -1 || expr.name.lexeme.equals("internals")) return number(visitVariableExpr(expr));
+        return environment.getNumberAt(expr.depth, expr.slot);
+    }
+
+    private double binaryNumber(Expr.Binary expr) {
+        double left, right;
+        try {
+            left = evaluateNumber(expr.left);
+        } catch (UnexpectedResult result) {
+            return number(deoptimize(expr, result.value));
+        }
+        try {
+            right = evaluateNumber(expr.right);
+        } catch (UnexpectedResult result) {
+            return number(deoptimize(expr, left, result.value));
+        }
+        return arithmetic(expr.operator.type, left, right);
+    }
+
+    private double number(Object value) {
+        if (value instanceof Double) return (double) value;
+        throw new UnexpectedResult(value);
+    }
+
+    private boolean producesNumber(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Double;
+        if (!(expr instanceof Expr.Binary)) return false;
+        Expr.Binary binary = (Expr.Binary) expr;
+        return binary.specialization == Expr.Binary.NUMBERS && isArithmetic(binary.operator.type);
+    }
+
+    private boolean isArithmetic(TokenType operator) {
+        switch (operator) {
+            case PLUS:
+            case MINUS:
+            case STAR:
+            case SLASH:
+            case MODULO:
+            case EXPONENTIATION:
+                return true;
+        }
+        return false;
+    }
+
+    private double arithmetic(TokenType operator, double left, double right) {
+        switch (operator) {
+            case PLUS: return left + right;
+            case MINUS: return left - right;
+            case STAR: return left * right;
+            case SLASH: return left / right;
+            case MODULO: return left % right;
+            case EXPONENTIATION: return Math.pow(left, right);
+        }
+        throw new IllegalStateException("Operator " + operator + " is not arithmetic.");
+    }
+
+    private Object numberBinary(TokenType operator, double left, double right) {
+        switch (operator) {
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            case LESS: return left < right;
+            case LESS_EQUAL: return left <= right;
+        }
+        return arithmetic(operator, left, right);
+    }
+
+    Object binary(Token operator, Object left, Object right) {
+        switch (operator.type) {
             case BANG_EQUAL:
                 return !isEqual(left, right);
             case EQUAL_EQUAL:
                 return isEqual(left, right);
             case GREATER:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left > (double) right;
             case GREATER_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left >= (double) right;
             case LESS:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left < (double) right;
             case LESS_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left <= (double) right;
             case MINUS:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left - (double) right;
             case PLUS:
                 if (left instanceof Double && right instanceof Double) {
@@ -401,29 +629,29 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                     return left + stringify(right);
                 }
             case SLASH:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left / (double) right;
             case STAR:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left * (double) right;
             case INSTANCEOF:
-                if (!(right instanceof ESClass)) throw new RuntimeError(expr.operator, "Right operand must be of type 'class'.");
-                if (!(left instanceof ESInstance)) throw new RuntimeError(expr.operator, "Left operand must be of type 'instance'.");
+                if (!(right instanceof ESClass)) throw new RuntimeError(operator, "Right operand must be of type 'class'.");
+                if (!(left instanceof ESInstance)) throw new RuntimeError(operator, "Left operand must be of type 'instance'.");
                 return (((ESInstance) left).isInstanceOf((ESClass) right));
             case MODULO:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (double) left % (double) right;
             case RIGHT_SHIFT:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (int)(double) left >> (int)(double) right;
             case LEFT_SHIFT:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (int)(double) left << (int)(double) right;
             case EXPONENTIATION:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return Math.pow((double) left, (double) right);
             case XOR:
-                checkNumberOperands(expr.operator, left, right);
+                checkNumberOperands(operator, left, right);
                 return (int)(double) left ^ (int)(double) right;
         }
         return null;
@@ -431,6 +659,10 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get) {
+            return invoke((Expr.Get) expr.callee, expr);
+        }
+
         Object callee = evaluate(expr.callee);
 
         List<Object> arguments = new ArrayList<>();
@@ -438,24 +670,83 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             arguments.add(evaluate(argument));
         }
 
+        return call(callee, arguments, expr.paren);
+    }
+
+    // obj.method(args) runs the method with obj as its receiver instead of calling the
+    // bound copy that visitGetExpr would allocate. The same goes for the built-in types.
+    private Object invoke(Expr.Get get, Expr.Call expr) {
+        Object object = evaluate(get.object);
+        ESFunction method = method(object, get);
+        NativeMethod<?> nativeMethod = method == null ? nativeMethod(object, get) : null;
+        Object callee = method == null && nativeMethod == null ? get(object, get) : method;
+
+        List<Object> arguments = new ArrayList<>();
+        for (Expr argument : expr.arguments) {
+            arguments.add(evaluate(argument));
+        }
+
+        if (method != null) return invoke(method, (ESInstance) object, arguments, expr.paren);
+        if (nativeMethod != null) return invoke(nativeMethod, object, arguments, get.name, expr.paren);
+        return call(callee, arguments, expr.paren);
+    }
+
+    // The unbound method a call through this Get would run, or null if it needs the general path.
+    ESFunction method(Object object, Expr.Get get) {
+        if (!(object instanceof ESInstance)) return null;
+        ESFunction method = ((ESInstance) object).method(get.name, get.cache);
+        if (method == null || method.isGetter()) return null;
+        return method;
+    }
+
+    Object invoke(ESFunction method, ESInstance receiver, List<Object> arguments, Token paren) {
+        if (arguments.size() != method.arity()) {
+            throw new RuntimeError(paren, "Expected " + method.arity() + " arguments but got " + arguments.size() + " instead.");
+        }
+
+        return method.invoke(this, receiver, arguments);
+    }
+
+    // The shared method of a built-in type a call through this Get would run, or null if the
+    // object isn't one of them.
+    NativeMethod<?> nativeMethod(Object object, Expr.Get get) {
+        if (object instanceof ESArray) return ESArray.method(get.name);
+        if (object instanceof ESList) return ESList.method(get.name);
+        if (object instanceof ESList.Iterator) return ESList.Iterator.method(get.name);
+        if (object instanceof ESNumberArray) return ESNumberArray.method(get.name);
+        return null;
+    }
+
+    Object invoke(NativeMethod<?> method, Object receiver, List<Object> arguments, Token name, Token paren) {
+        if (arguments.size() != method.arity) {
+            throw new RuntimeError(paren, "Expected " + method.arity + " arguments but got " + arguments.size() + " instead.");
+        }
+
+        return method.invoke(receiver, this, arguments, name);
+    }
+
+    Object call(Object callee, List<Object> arguments, Token paren) {
         if (!(callee instanceof ESCallable)) {
-            throw new RuntimeError(expr.paren, "Only functions and classes can be called.");
+            throw new RuntimeError(paren, "Only functions and classes can be called.");
         }
 
         ESCallable function = (ESCallable) callee;
 
         if (arguments.size() != function.arity()) {
-            throw new RuntimeError(expr.paren, "Expected " + function.arity() + " arguments but got " + arguments.size() + " instead.");
+            throw new RuntimeError(paren, "Expected " + function.arity() + " arguments but got " + arguments.size() + " instead.");
         }
 
-        return function.call(this, arguments);
+        return function.call(this, arguments, paren);
     }
 
     @Override
     public Object visitGetExpr(Expr.Get expr) {
-        Object object = evaluate(expr.object);
+        return get(evaluate(expr.object), expr);
+    }
+
+    Object get(Object object, Expr.Get expr) {
         if (object instanceof ESInstance) {
-            Object result = ((ESInstance) object).get(expr.name);
+            Object result = ((ESInstance) object).get(expr.name, expr.cache);
             if (result instanceof ESFunction && ((ESFunction) result).isGetter()) {
                 System.out.println(object);
                 result = ((ESFunction) result).call(this, null);
@@ -468,6 +759,18 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             return ((ESArray) object).getMethod(expr.name);
         }
 
+        if (object instanceof ESList) {
+            return ((ESList) object).getMethod(expr.name);
+        }
+
+        if (object instanceof ESList.Iterator) {
+            return ((ESList.Iterator) object).getMethod(expr.name);
+        }
+
+        if (object instanceof ESNumberArray) {
+            return ((ESNumberArray) object).getMethod(expr.name);
+        }
+
         if (object instanceof ESEnum) {
             if (((ESEnum) object).methods.containsKey(expr.name.lexeme)) {
                 return ((ESEnum) object).getMethod(expr.name);
@@ -514,7 +817,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         Object object = evaluate(expr.object);
         if (object instanceof ESInstance) {
             Object value = evaluate(expr.value);
-            ((ESInstance) object).set(expr.name, value);
+            ((ESInstance) object).set(expr.name, expr.cache, value);
             return value;
         } else if (object instanceof ESDictionary) {
             Object value = evaluate(expr.value);
@@ -527,11 +830,9 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        int distance = locals.get(expr);
-
-        ESClass superclass = (ESClass) environment.getAt(distance, "super");
-        ESInstance object = (ESInstance) environment.getAt(distance - 1, "this");
-        ESFunction method = superclass.findMethod(object, expr.method.lexeme);
+        ESClass superclass = (ESClass) environment.getAt(expr.depth, expr.slot);
+        ESInstance object = (ESInstance) evaluate(expr.receiver);
+        ESFunction method = superclass.findMethod(expr.method.lexeme);
 
         if (method == null) {
             throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
@@ -542,7 +843,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitThisExpr(Expr.This expr) {
-        return lookUpVariable(expr.keyword, expr);
+        if (expr.depth != -1) return environment.getAt(expr.depth, expr.slot);
+        return globals.get(expr.keyword);
     }
 
     @Override
@@ -565,10 +867,11 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        if (expr.name.lexeme.equals("internals") && !expr.name.file.startsWith("natives")) {
+        if (expr.name.lexeme.equals("internals") && !expr.name.file.directory.startsWith("natives")) {
             throw new RuntimeError(expr.name, "Cannot access a reserved variable name.");
         }
-        return lookUpVariable(expr.name, expr);
+        if (expr.depth != -1) return environment.getAt(expr.depth, expr.slot);
+        return global(expr).value;
     }
 
     @Override
@@ -595,14 +898,33 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitArrayExpr(Expr.Array expr) {
-        return new ESArray(expr.elements.stream().map(this::evaluate).collect(Collectors.toList()));
+        Object[] elements = new Object[expr.elements.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = evaluate(expr.elements.get(i));
+        }
+        return new ESArray(elements);
     }
 
-    private Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
+    // A global is looked up by name the first time a site reads it in this context; after that
+    // the site goes straight to its cell. Parallel runs functions in forked interpreters with
+    // their own globals, so a cached cell is only used while it belongs to these globals. The
+    // field is written in one step, so a racing worker sees either cell and checks its owner.
+    Environment.Cell global(Expr.Variable expr) {
+        Environment.Cell cell = expr.cell;
+        if (cell == null || cell.owner != globals) {
+            cell = globals.cell(expr.name);
+            expr.cell = cell;
+        }
+        return cell;
+    }
 
-        if (distance != null) return environment.getAt(distance, name.lexeme);
-        else return globals.get(name);
+    Environment.Cell global(Expr.Assign expr) {
+        Environment.Cell cell = expr.cell;
+        if (cell == null || cell.owner != globals) {
+            cell = globals.cell(expr.name);
+            expr.cell = cell;
+        }
+        return cell;
     }
 
     private void checkNumberOperand(Token operator, Object operand) {
@@ -615,13 +937,13 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         throw new RuntimeError(operator, "Operands must be numbers.");
     }
 
-    private boolean isTruthy(Object object) {
+    boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean) object;
         return true;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
 
@@ -4,31 +4,66 @@ import java.io.*;
 import java.util.*;
 
 public class LibraryLoader {
+    static final String[] NATIVES = { "natives/Error.evs", "natives/Primitives.evs" };
+
+    // Top-level names defined by the natives. Each library is loaded the first time one of its
+    // names is looked up, so a script only pays for the libraries it actually uses.
+    private static final Map<String, String> EXPORTS = Map.of(
+        "Error", "natives/Error.evs",
+        "Exception", "natives/Error.evs",
+        "UnhandledException", "natives/Error.evs",
+        "Number", "natives/Primitives.evs"
+    );
+
+    private final Context context;
     private final List<String> libraries = new ArrayList<>();
+    private final Set<String> loaded = new HashSet<>();
 
-    LibraryLoader() {
-        libraries.add("natives/Error.evs");
-        libraries.add("natives/List.evs");
-        libraries.add("natives/Primitives.evs");
+    LibraryLoader(Context context) {
+        this.context = context;
+        libraries.addAll(Arrays.asList(NATIVES));
     }
 
     public void loadClasses() throws IOException {
-        int start = Commons.clock();
-        System.out.println("Info: Attempting to load " + libraries.size() + " libraries...");
-        String line;
-        StringBuilder source = new StringBuilder();
-
         for (String library : libraries) {
-            InputStreamReader reader = new InputStreamReader(EverScript.class.getResourceAsStream(library));
-            BufferedReader br = new BufferedReader(reader);
-            while ((line = br.readLine()) != null) {
-                source.append(line).append("\n");
+            load(library);
+        }
+    }
+
+    // Loads the library that defines name, returning false if there is none left to load.
+    boolean loadExporting(String name) {
+        String library = EXPORTS.get(name);
+        if (library == null || !libraries.contains(library) || loaded.contains(library)) return false;
+        try {
+            load(library);
+        } catch (IOException e) {
+            throw new NativeError("Could not load the '" + library + "' library.");
+        }
+        return true;
+    }
+
+    // Marks everything other has loaded as loaded here too, for a fork that gets the classes
+    // with the rest of the globals instead of loading its own copies.
+    void shareLoaded(LibraryLoader other) {
+        loaded.addAll(other.loaded);
+    }
+
+    // A library can be loaded in the middle of a script, so it runs in its own scope under the
+    // globals: its classes inherit each other rather than whatever the script has defined under
+    // the same names. Only the names the script hasn't defined are then copied into the globals.
+    private void load(String library) throws IOException {
+        if (loaded.add(library)) {
+            String source = getLibrarySource(library);
+            Environment globals = context.interpreter.globals;
+            Environment scope = new Environment(globals);
+            context.interpreter.globals = scope;
+            try {
+                context.load(library, source);
+            } finally {
+                context.interpreter.globals = globals;
             }
-            EverScript.run(library, source.toString());
-            source = new StringBuilder();
+            globals.defineMissing(scope);
         }
-        int end = Commons.clock() - start;
-        System.out.println("Info: Loaded " + libraries.size() + " libraries in " + end + "ms.");
     }
 
     public int size() {
@@ -0,0 +1,35 @@
+package com.linkbyte.everscript;
+
+import java.nio.file.*;
+import java.util.*;
+
+// The files a Context has imported, keyed by canonical path. A module runs once; importing it
+// again is a no-op, since everything it defined already lives in the globals.
+class ModuleRegistry {
+  private final Set<Path> loaded = new HashSet<>();
+  // Modules whose top-level code is running, innermost last.
+  private final Deque<Path> loading = new ArrayDeque<>();
+
+  // Returns false if the module was already imported, and rejects circular imports.
+  boolean begin(Path path, Token keyword) {
+    if (loaded.contains(path)) return false;
+    if (loading.contains(path)) {
+      StringBuilder cycle = new StringBuilder();
+      boolean inCycle = false;
+      for (Path module : loading) {
+        if (module.equals(path)) inCycle = true;
+        if (inCycle) cycle.append(module.getFileName()).append(" -> ");
+      }
+      cycle.append(path.getFileName());
+      throw new RuntimeError(keyword, "Circular import: " + cycle + ".");
+    }
+    loading.addLast(path);
+    return true;
+  }
+
+  // A module that failed is forgotten, so importing it again retries it.
+  void end(Path path, boolean succeeded) {
+    loading.removeLast();
+    if (succeeded) loaded.add(path);
+  }
+}
@@ -0,0 +1,43 @@
+package com.linkbyte.everscript;
+
+import java.util.List;
+
+// A method of a built-in type. One instance is shared by every value of the type and is given
+// its receiver when called, so values don't carry their own method objects.
+abstract class NativeMethod<T> {
+    final int arity;
+
+    NativeMethod(int arity) {
+        this.arity = arity;
+    }
+
+    abstract Object call(T receiver, Interpreter interpreter, List<Object> arguments, Token name);
+
+    // For callers that found the method through the receiver's own type, so it is always a T.
+    @SuppressWarnings("unchecked")
+    Object invoke(Object receiver, Interpreter interpreter, List<Object> arguments, Token name) {
+        return call((T) receiver, interpreter, arguments, name);
+    }
+
+    // Makes a callable for a method read as a value, e.g. `let push = array.push;`. A call like
+    // array.push(x) doesn't need one; the interpreter calls the shared method with its receiver.
+    ESCallable bind(T receiver, Token name) {
+        NativeMethod<T> method = this;
+        return new ESCallable() {
+            @Override
+            public int arity() {
+                return arity;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return method.call(receiver, interpreter, arguments, name);
+            }
+
+            @Override
+            public String toString() {
+                return "<native fn>";
+            }
+        };
+    }
+}
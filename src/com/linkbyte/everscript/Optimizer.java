@@ -0,0 +1,252 @@
+package com.linkbyte.everscript;
+
+import java.util.*;
+
+// Rewrites a resolved program in place before it runs: operators on literals are folded into
+// literals, ifs with a literal condition are replaced by the branch they take, and empty
+// blocks are dropped. Folding goes through the interpreter's own operators, so a folded value
+// is exactly what the expression would have produced at runtime; anything that would throw is
+// left for the runtime to report.
+class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+  private final Interpreter interpreter;
+
+  Optimizer(Interpreter interpreter) {
+    this.interpreter = interpreter;
+  }
+
+  void optimize(List<Stmt> statements) {
+    int kept = 0;
+    for (Stmt statement : statements) {
+      Stmt optimized = optimize(statement);
+      if (optimized != null) statements.set(kept++, optimized);
+    }
+    statements.subList(kept, statements.size()).clear();
+  }
+
+  // The statement to run instead of stmt, or null if there is nothing left to run.
+  private Stmt optimize(Stmt stmt) {
+    if (stmt == null) return null;
+    return stmt.accept(this);
+  }
+
+  // For places that need a statement even when there is nothing left to run.
+  private Stmt nested(Stmt stmt) {
+    Stmt optimized = optimize(stmt);
+    return optimized != null ? optimized : new Stmt.Block(new ArrayList<>());
+  }
+
+  private Expr fold(Expr expr) {
+    if (expr == null) return null;
+    return expr.accept(this);
+  }
+
+  @Override
+  public Stmt visitBlockStmt(Stmt.Block stmt) {
+    optimize(stmt.statements);
+    return stmt.statements.isEmpty() ? null : stmt;
+  }
+
+  @Override
+  public Stmt visitClassStmt(Stmt.Class stmt) {
+    for (Stmt.Function method : stmt.methods) visitFunctionStmt(method);
+    for (Stmt.Function method : stmt.staticMethods) visitFunctionStmt(method);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+    stmt.expression = fold(stmt.expression);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitFunctionStmt(Stmt.Function stmt) {
+    visitFunctionExpr(stmt.function);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitIfStmt(Stmt.If stmt) {
+    stmt.condition = fold(stmt.condition);
+    if (stmt.condition instanceof Expr.Literal) {
+      boolean taken = interpreter.isTruthy(((Expr.Literal) stmt.condition).value);
+      return optimize(taken ? stmt.thenBranch : stmt.elseBranch);
+    }
+    stmt.thenBranch = nested(stmt.thenBranch);
+    stmt.elseBranch = optimize(stmt.elseBranch);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitReturnStmt(Stmt.Return stmt) {
+    stmt.value = fold(stmt.value);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitVarStmt(Stmt.Var stmt) {
+    stmt.initializer = fold(stmt.initializer);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitWhileStmt(Stmt.While stmt) {
+    stmt.condition = fold(stmt.condition);
+    stmt.body = nested(stmt.body);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitImportStmt(Stmt.Import stmt) {
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitEnumStmt(Stmt.Enum stmt) {
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitThrowStmt(Stmt.Throw stmt) {
+    stmt.thrown = fold(stmt.thrown);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitTryStmt(Stmt.Try stmt) {
+    stmt.body = nested(stmt.body);
+    for (Stmt.Catch catchStmt : stmt.catches) visitCatchStmt(catchStmt);
+    stmt.finallyStmt = optimize(stmt.finallyStmt);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visitCatchStmt(Stmt.Catch stmt) {
+    stmt.body = nested(stmt.body);
+    return stmt;
+  }
+
+  @Override
+  public Expr visitAssignExpr(Expr.Assign expr) {
+    expr.value = fold(expr.value);
+    return expr;
+  }
+
+  @Override
+  public Expr visitBinaryExpr(Expr.Binary expr) {
+    expr.left = fold(expr.left);
+    expr.right = fold(expr.right);
+    if (expr.left instanceof Expr.Literal && expr.right instanceof Expr.Literal) {
+      try {
+        return new Expr.Literal(interpreter.binary(expr.operator, ((Expr.Literal) expr.left).value, ((Expr.Literal) expr.right).value));
+      } catch (RuntimeError error) {
+        return expr;
+      }
+    }
+    return expr;
+  }
+
+  @Override
+  public Expr visitCallExpr(Expr.Call expr) {
+    expr.callee = fold(expr.callee);
+    expr.arguments.replaceAll(this::fold);
+    return expr;
+  }
+
+  @Override
+  public Expr visitGetExpr(Expr.Get expr) {
+    expr.object = fold(expr.object);
+    return expr;
+  }
+
+  // Parentheses only matter to the parser.
+  @Override
+  public Expr visitGroupingExpr(Expr.Grouping expr) {
+    return fold(expr.expression);
+  }
+
+  @Override
+  public Expr visitLiteralExpr(Expr.Literal expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitLogicalExpr(Expr.Logical expr) {
+    expr.left = fold(expr.left);
+    expr.right = fold(expr.right);
+    if (expr.left instanceof Expr.Literal) {
+      boolean truthy = interpreter.isTruthy(((Expr.Literal) expr.left).value);
+      boolean or = expr.operator.type == TokenType.OR || expr.operator.type == TokenType.PIPE_PIPE;
+      return truthy == or ? expr.left : expr.right;
+    }
+    return expr;
+  }
+
+  @Override
+  public Expr visitSetExpr(Expr.Set expr) {
+    expr.object = fold(expr.object);
+    expr.value = fold(expr.value);
+    return expr;
+  }
+
+  @Override
+  public Expr visitSuperExpr(Expr.Super expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitThisExpr(Expr.This expr) {
+    return expr;
+  }
+
+  // Only negated numbers are folded; the other unary operators are not safe on every literal.
+  @Override
+  public Expr visitUnaryExpr(Expr.Unary expr) {
+    expr.right = fold(expr.right);
+    if (expr.operator.type == TokenType.MINUS && expr.right instanceof Expr.Literal) {
+      Object value = ((Expr.Literal) expr.right).value;
+      if (value instanceof Double) return new Expr.Literal(-(double) value);
+    }
+    return expr;
+  }
+
+  @Override
+  public Expr visitVariableExpr(Expr.Variable expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visitArrayExpr(Expr.Array expr) {
+    expr.elements.replaceAll(this::fold);
+    return expr;
+  }
+
+  @Override
+  public Expr visitIndexGetExpr(Expr.IndexGet expr) {
+    expr.indexee = fold(expr.indexee);
+    expr.index = fold(expr.index);
+    return expr;
+  }
+
+  @Override
+  public Expr visitIndexSetExpr(Expr.IndexSet expr) {
+    expr.indexee = fold(expr.indexee);
+    expr.index = fold(expr.index);
+    expr.value = fold(expr.value);
+    return expr;
+  }
+
+  @Override
+  public Expr visitFunctionExpr(Expr.Function expr) {
+    optimize(expr.body);
+    return expr;
+  }
+
+  @Override
+  public Expr visitDictionaryExpr(Expr.Dictionary expr) {
+    for (Map.Entry<Token, Object> property : expr.properties.entrySet()) {
+      property.setValue(fold((Expr) property.getValue()));
+    }
+    return expr;
+  }
+}
@@ -0,0 +1,114 @@
+package com.linkbyte.everscript;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// Runs a script function over slices of an array on the common ForkJoinPool. Each thread
+// works through its slices with its own interpreter, forked from the caller's, so the function
+// should only depend on its arguments: globals it assigns stay in that thread's copy, and
+// instances shared between threads aren't synchronized.
+final class Parallel {
+    private interface Slice<T> {
+        T run(Interpreter worker, int from, int to);
+    }
+
+    // The forked interpreter running a slice on this thread, if any.
+    private static final ThreadLocal<Interpreter> WORKER = new ThreadLocal<>();
+
+    private Parallel() {}
+
+    // The interpreter to run script code with on this thread: the worker's while it runs a
+    // slice, so that code reached from a slice never touches the caller's interpreter.
+    static Interpreter interpreter(Interpreter declaring) {
+        Interpreter worker = WORKER.get();
+        return worker != null ? worker : declaring;
+    }
+
+    static Object[] map(Interpreter interpreter, Object[] values, Object function, Token name) {
+        Object[] result = new Object[values.length];
+        run(interpreter, values.length, name, (worker, from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = worker.call(function, Collections.singletonList(values[i]), name);
+            }
+            return null;
+        });
+        return result;
+    }
+
+    static Object[] filter(Interpreter interpreter, Object[] values, Object function, Token name) {
+        List<Object> result = new ArrayList<>();
+        for (List<Object> kept : run(interpreter, values.length, name, (worker, from, to) -> {
+            List<Object> slice = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                if (worker.isTruthy(worker.call(function, Collections.singletonList(values[i]), name))) slice.add(values[i]);
+            }
+            return slice;
+        })) {
+            result.addAll(kept);
+        }
+        return result.toArray();
+    }
+
+    // Each slice is reduced from initial and the results are then folded together in order, so
+    // the function has to be associative and initial has to leave a value unchanged (0 for a sum).
+    static Object reduce(Interpreter interpreter, Object[] values, Object function, Object initial, Token name) {
+        List<Object> partials = run(interpreter, values.length, name, (worker, from, to) -> {
+            Object result = initial;
+            for (int i = from; i < to; i++) {
+                result = worker.call(function, Arrays.asList(values[i], result), name);
+            }
+            return result;
+        });
+        if (partials.isEmpty()) return initial;
+        Object result = partials.get(0);
+        for (int i = 1; i < partials.size(); i++) {
+            result = interpreter.call(function, Arrays.asList(partials.get(i), result), name);
+        }
+        return result;
+    }
+
+    // Splits [0, length) into a few slices per thread, so uneven callbacks still balance out.
+    // A slice takes an idle worker and hands it back when it is done, so there is one worker
+    // per thread rather than per slice. They are forked up front, while the caller's globals
+    // can't change under them; only a slice that finds every worker busy forks another.
+    private static <T> List<T> run(Interpreter interpreter, int length, Token name, Slice<T> slice) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int slices = Math.min(length, pool.getParallelism() * 4);
+        Queue<Interpreter> workers = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < Math.min(slices, pool.getParallelism()); i++) {
+            workers.add(interpreter.fork());
+        }
+        List<Callable<T>> tasks = new ArrayList<>(slices);
+        for (int i = 0; i < slices; i++) {
+            int from = (int) ((long) length * i / slices);
+            int to = (int) ((long) length * (i + 1) / slices);
+            tasks.add(() -> {
+                Interpreter worker = workers.poll();
+                if (worker == null) worker = interpreter.fork();
+                Interpreter previous = WORKER.get();
+                WORKER.set(worker);
+                try {
+                    return slice.run(worker, from, to);
+                } finally {
+                    WORKER.set(previous);
+                    workers.add(worker);
+                }
+            });
+        }
+
+        List<T> results = new ArrayList<>(slices);
+        for (Future<T> future : pool.invokeAll(tasks)) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw new RuntimeError(name, e.getCause().toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeError(name, "Interrupted while waiting for a parallel operation.");
+            }
+        }
+        return results;
+    }
+}
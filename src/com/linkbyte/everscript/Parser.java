@@ -7,10 +7,14 @@ import static com.linkbyte.everscript.TokenType.*;
 class Parser {
     private static class ParseError extends RuntimeException {}
 
-    private final List<Token> tokens;
+    private final Context context;
+    // Tokens are pulled from the scanner by index as the parser reaches them. The parser looks
+    // at most three tokens back and one ahead, which the scanner's window covers.
+    private final Scanner tokens;
     private int current = 0;
 
-    Parser(List<Token> tokens) {
+    Parser(Context context, Scanner tokens) {
+        this.context = context;
         this.tokens = tokens;
     }
 
@@ -106,14 +110,14 @@ class Parser {
         consume(RIGHT_PAREN, "Expected ')' after for clauses.");
         Stmt body = statement();
         if (increment != null) {
-            body = new Stmt.Block(Arrays.asList(
+            body = new Stmt.Block(new ArrayList<>(Arrays.asList(
                     body,
-                    new Stmt.Expression(increment)));
+                    new Stmt.Expression(increment))));
         }
         if (condition == null) condition = new Expr.Literal(true);
         body = new Stmt.While(condition, body);
         if (initializer != null) {
-            body = new Stmt.Block(Arrays.asList(initializer, body));
+            body = new Stmt.Block(new ArrayList<>(Arrays.asList(initializer, body)));
         }
         return body;
     }
@@ -481,7 +485,7 @@ class Parser {
     private boolean match(TokenType... types) {
         for (TokenType type : types) {
             if (check(type)) {
-                advance();
+                current++;
                 return true;
             }
         }
@@ -495,13 +499,13 @@ class Parser {
 
     private boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type == type;
+        return tokens.type(current) == type;
     }
 
     private boolean checkNext(TokenType type) {
         if (isAtEnd()) return false;
-        if (tokens.get(current + 1).type == EOF) return false;
-        return tokens.get(current + 1).type == type;
+        if (tokens.type(current + 1) == EOF) return false;
+        return tokens.type(current + 1) == type;
     }
 
     private Token advance() {
@@ -510,35 +514,31 @@ class Parser {
     }
 
     private boolean isAtEnd() {
-        return peek().type == EOF;
+        return tokens.type(current) == EOF;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokens.token(current);
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokens.token(current - 1);
     }
 
     private Token backwards(int range) {
-        return tokens.get(current - range);
-    }
-
-    private Token forwards(int range) {
-        return tokens.get(current + range);
+        return tokens.token(current - range);
     }
 
     private ParseError error(Token token, String message) {
-        EverScript.error(token, "ParseError", message);
+        context.error(token, "ParseError", message);
         return new ParseError();
     }
 
     private void synchronize() {
         advance();
         while (!isAtEnd()) {
-            if (previous().type == SEMICOLON) return;
-            switch (peek().type) {
+            if (tokens.type(current - 1) == SEMICOLON) return;
+            switch (tokens.type(current)) {
                 case CLASS:
                 case FUN:
                 case VAR:
@@ -5,6 +5,7 @@ import java.util.*;
 class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   private final Interpreter interpreter;
   private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+  private final Stack<Map<String, Integer>> slots = new Stack<>();
   private FunctionType currentFunction = FunctionType.NONE;
 
   Resolver(Interpreter interpreter) {
@@ -42,13 +43,13 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   public Void visitBlockStmt(Stmt.Block stmt) {
     beginScope();
     resolve(stmt.statements);
-    endScope();
+    stmt.scopeSize = endScope();
     return null;
   }
 
   @Override
   public Void visitClassStmt(Stmt.Class stmt) {
-    declare(stmt.name);
+    stmt.slot = declare(stmt.name);
     define(stmt.name);
 
     ClassType enclosingClass = currentClass;
@@ -58,12 +59,9 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
       currentClass = ClassType.SUBCLASS;
       resolve(stmt.superclass);
       beginScope();
-      scopes.peek().put("super", true);
+      declareInternal("super");
     }
 
-    beginScope();
-    scopes.peek().put("this", true);
-
     for (Stmt.Function method : stmt.methods) {
       FunctionType declaration = FunctionType.METHOD;
       if (method.name.lexeme.equals(stmt.name.lexeme)) {
@@ -80,8 +78,6 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
       resolveFunction(method, declaration, FunctionCtx.STATIC);
     }
 
-    endScope();
-
     if (stmt.superclass != null) endScope();
 
     currentClass = enclosingClass;
@@ -91,7 +87,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitEnumStmt(Stmt.Enum stmt) {
-    declare(stmt.name);
+    stmt.slot = declare(stmt.name);
     define(stmt.name);
     stmt.properties.forEach(this::declare);
     stmt.properties.forEach(this::define);
@@ -100,7 +96,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitDictionaryExpr(Expr.Dictionary expr) {
-    declare(expr.name);
+    expr.slot = declare(expr.name);
     define(expr.name);
 
     for (Map.Entry<Token, Object> property : expr.properties.entrySet()) {
@@ -119,7 +115,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitFunctionStmt(Stmt.Function stmt) {
-    declare(stmt.name);
+    stmt.slot = declare(stmt.name);
     define(stmt.name);
     resolveFunction(stmt, FunctionType.FUNCTION, FunctionCtx.STATIC);
     return null;
@@ -148,11 +144,11 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   @Override
   public Void visitReturnStmt(Stmt.Return stmt) {
     if (currentFunction == FunctionType.NONE) {
-      EverScript.error(stmt.keyword, "SyntaxError", "Illegal return statement.");
+      interpreter.context.error(stmt.keyword, "SyntaxError", "Illegal return statement.");
     }
     if (stmt.value != null) {
       if (currentFunction == FunctionType.INITIALIZER) {
-        EverScript.error(stmt.keyword, "SyntaxError", "Cannot return a value from an initializer.");
+        interpreter.context.error(stmt.keyword, "SyntaxError", "Cannot return a value from an initializer.");
       }
       resolve(stmt.value);
     }
@@ -161,7 +157,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitVarStmt(Stmt.Var stmt) {
-    declare(stmt.name);
+    stmt.slot = declare(stmt.name);
     if (stmt.initializer != null) {
       resolve(stmt.initializer);
     }
@@ -178,7 +174,7 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   @Override
   public Void visitImportStmt(Stmt.Import stmt) {
-    declare(stmt.namespace);
+    stmt.slot = declare(stmt.namespace);
     define(stmt.namespace);
 
     resolve(stmt.module);
@@ -208,7 +204,8 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   @Override
   public Void visitAssignExpr(Expr.Assign expr) {
     resolve(expr.value);
-    resolveLocal(expr, expr.name);
+    expr.depth = depth(expr.name);
+    expr.slot = slot(expr.name, expr.depth);
     return null;
   }
 
@@ -262,26 +259,30 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   @Override
   public Void visitSuperExpr(Expr.Super expr) {
     if (currentClass == ClassType.NONE) {
-      EverScript.error(expr.keyword, "SyntaxError", "Cannot use 'super' outside of a class.");
+      interpreter.context.error(expr.keyword, "SyntaxError", "Cannot use 'super' outside of a class.");
     } else if (currentClass != ClassType.SUBCLASS) {
-      EverScript.error(expr.keyword, "SyntaxError", "Cannot use 'super' in a class with no superclass.");
+      interpreter.context.error(expr.keyword, "SyntaxError", "Cannot use 'super' in a class with no superclass.");
     }
-    resolveLocal(expr, expr.keyword);
+    expr.depth = depth(expr.keyword);
+    expr.slot = slot(expr.keyword, expr.depth);
+    expr.receiver.depth = depth(expr.receiver.keyword);
+    expr.receiver.slot = slot(expr.receiver.keyword, expr.receiver.depth);
     return null;
   }
 
   @Override
   public Void visitThisExpr(Expr.This expr) {
     if (currentClass == ClassType.NONE) {
-      EverScript.error(expr.keyword, "SyntaxError", "Cannot use 'this' outside of a class.");
+      interpreter.context.error(expr.keyword, "SyntaxError", "Cannot use 'this' outside of a class.");
       return null;
     }
 
     if (currentContext == FunctionCtx.STATIC) {
-      EverScript.error(expr.keyword, "SyntaxError", "Cannot use 'this' in a static context.");
+      interpreter.context.error(expr.keyword, "SyntaxError", "Cannot use 'this' in a static context.");
     }
 
-    resolveLocal(expr, expr.keyword);
+    expr.depth = depth(expr.keyword);
+    expr.slot = slot(expr.keyword, expr.depth);
     return null;
   }
 
@@ -295,10 +296,11 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
   public Void visitVariableExpr(Expr.Variable expr) {
     if (!scopes.isEmpty() &&
         scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
-      EverScript.error(expr.name, "SyntaxError", "Cannot read local variable in its own initializer.");
+      interpreter.context.error(expr.name, "SyntaxError", "Cannot read local variable in its own initializer.");
     }
 
-    resolveLocal(expr, expr.name);
+    expr.depth = depth(expr.name);
+    expr.slot = slot(expr.name, expr.depth);
     return null;
   }
 
@@ -337,36 +339,35 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     FunctionCtx enclosingContext = currentContext;
     currentContext = ctx;
 
-    List<Token> params;
-    List<Stmt> body;
+    Expr.Function declaration;
 
     if (function instanceof Stmt.Function) {
-      params = ((Stmt.Function) function).function.params;
-      body = ((Stmt.Function) function).function.body;
+      declaration = ((Stmt.Function) function).function;
 
-      if (currentFunction == FunctionType.INITIALIZER && currentContext == FunctionCtx.STATIC && params.size() > 0) {
-        EverScript.error(((Stmt.Function) function).name, "ArityError", "Static initializers cannot contain parameters.");
+      if (currentFunction == FunctionType.INITIALIZER && currentContext == FunctionCtx.STATIC && declaration.params.size() > 0) {
+        interpreter.context.error(((Stmt.Function) function).name, "ArityError", "Static initializers cannot contain parameters.");
       }
     } else if (function instanceof Expr.Function) {
-      params = ((Expr.Function) function).params;
-      body = ((Expr.Function) function).body;
+      declaration = (Expr.Function) function;
 
-      if (currentFunction == FunctionType.INITIALIZER && currentContext == FunctionCtx.STATIC && params.size() > 0) {
-        EverScript.error(null, "ArityError", "Static initializers cannot contain parameters.");
+      if (currentFunction == FunctionType.INITIALIZER && currentContext == FunctionCtx.STATIC && declaration.params.size() > 0) {
+        interpreter.context.error(null, "ArityError", "Static initializers cannot contain parameters.");
       }
     } else {
-      params = new ArrayList<>();
-      body = new ArrayList<>();
+      declaration = new Expr.Function(new ArrayList<>(), new ArrayList<>());
     }
 
     beginScope();
-    for (Token param : params) {
+    for (Token param : declaration.params) {
       declare(param);
       define(param);
     }
+    if (ctx == FunctionCtx.DYNAMIC) {
+      declaration.thisSlot = declareInternal("this");
+    }
 
-    resolve(body);
-    endScope();
+    resolve(declaration.body);
+    declaration.scopeSize = endScope();
 
     currentFunction = enclosingFunction;
     currentContext = enclosingContext;
@@ -374,19 +375,37 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
   private void beginScope() {
     scopes.push(new HashMap<>());
+    slots.push(new HashMap<>());
   }
 
-  private void endScope() {
+  private int endScope() {
     scopes.pop();
+    return slots.pop().size();
   }
 
-  private void declare(Token name) {
-    if (scopes.isEmpty()) return;
+  private int declare(Token name) {
+    if (scopes.isEmpty()) return -1;
     Map<String, Boolean> scope = scopes.peek();
     if (scope.containsKey(name.lexeme)) {
-      EverScript.error(name, "SyntaxError", "Identifier '" + name.lexeme + "' has already been declared in this scope.");
+      interpreter.context.error(name, "SyntaxError", "Identifier '" + name.lexeme + "' has already been declared in this scope.");
     }
     scope.put(name.lexeme, false);
+    return slot(name.lexeme);
+  }
+
+  private int declareInternal(String name) {
+    scopes.peek().put(name, true);
+    return slot(name);
+  }
+
+  private int slot(String name) {
+    Map<String, Integer> scope = slots.peek();
+    Integer slot = scope.get(name);
+    if (slot == null) {
+      slot = scope.size();
+      scope.put(name, slot);
+    }
+    return slot;
   }
 
   private void define(Token name) {
@@ -394,12 +413,18 @@ class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     scopes.peek().put(name.lexeme, true);
   }
 
-  private void resolveLocal(Expr expr, Token name) {
+  // How many scopes out name was declared, or -1 for a global. The Resolver stores this and
+  // the slot on the node itself, so the resolution holds in every context that runs the AST,
+  // including the ones that get a copy of it from the AstCache.
+  private int depth(Token name) {
     for (int i = scopes.size() - 1; i >= 0; i--) {
-      if (scopes.get(i).containsKey(name.lexeme)) {
-        interpreter.resolve(expr, scopes.size() - 1 - i);
-        return;
-      }
+      if (scopes.get(i).containsKey(name.lexeme)) return scopes.size() - 1 - i;
     }
+    return -1;
+  }
+
+  private int slot(Token name, int depth) {
+    if (depth == -1) return -1;
+    return slots.get(scopes.size() - 1 - depth).get(name.lexeme);
   }
 }
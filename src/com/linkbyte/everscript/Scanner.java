@@ -1,60 +1,89 @@
 package com.linkbyte.everscript;
 
 import java.io.File;
+import java.nio.CharBuffer;
 import java.util.*;
 
 import static com.linkbyte.everscript.TokenType.*;
 
+// Produces tokens on demand: the Parser asks for tokens by index and the scanner only scans
+// as far as it needs to. The most recent tokens are kept in a small ring of parallel arrays,
+// and a Token object, with its lexeme and literal, is only created for a token the parser
+// actually asks for. Punctuation that is just checked and skipped never becomes an object.
 class Scanner {
-    private static final Map<String, TokenType> keywords;
-    private final List<Token> tokens = new ArrayList<>();
-    private final StringBuilder source;
+    // Keywords grouped by first letter, so an identifier is matched against a few candidates
+    // straight from the source instead of being cut out into a String and hashed.
+    private static final String[][] keywords = new String[26][0];
+    private static final TokenType[][] keywordTypes = new TokenType[26][0];
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int WINDOW = 8;
+
+    private final int[] types = new int[WINDOW];
+    private final int[] offsets = new int[WINDOW];
+    private final int[] lengths = new int[WINDOW];
+    private final int[] lines = new int[WINDOW];
+    private final int[] cols = new int[WINDOW];
+    private final Object[] literals = new Object[WINDOW];
+    private final Token[] tokens = new Token[WINDOW];
+    private int count = 0;
+
+    private final char[] source;
+    private final int length;
     private int line, col, start, current;
-    private final String directory, file;
+    private final SourceFile file;
+    private final Context context;
 
     private int openParen = 0;
     private int openBracket = 0;
     private int openBrace = 0;
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fn", FUN);
-        keywords.put("if", IF);
-        keywords.put("null", NIL);
-        keywords.put("or", OR);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("this", THIS);
-        keywords.put("true", TRUE);
-        keywords.put("let", VAR);
-        keywords.put("while", WHILE);
-        keywords.put("implements", IMPLEMENTS);
-        keywords.put("static", STATIC);
-        keywords.put("import", IMPORT);
-        keywords.put("try", TRY);
-        keywords.put("catch", CATCH);
-        keywords.put("finally", FINALLY);
-        keywords.put("throw", THROW);
-        keywords.put("inherits", INHERITS);
-        keywords.put("enum", ENUM);
-        keywords.put("as", AS);
-        keywords.put("const", CONST);
-        keywords.put("trait", TRAIT);
-        keywords.put("abstract", ABSTRACT);
-        keywords.put("private", PRIVATE);
-        keywords.put("native", NATIVE);
-        keywords.put("match", MATCH);
-        keywords.put("case", CASE);
-        keywords.put("other", OTHER);
-        keywords.put("instanceof", INSTANCEOF);
+        keyword("and", AND);
+        keyword("class", CLASS);
+        keyword("else", ELSE);
+        keyword("false", FALSE);
+        keyword("for", FOR);
+        keyword("fn", FUN);
+        keyword("if", IF);
+        keyword("null", NIL);
+        keyword("or", OR);
+        keyword("return", RETURN);
+        keyword("super", SUPER);
+        keyword("this", THIS);
+        keyword("true", TRUE);
+        keyword("let", VAR);
+        keyword("while", WHILE);
+        keyword("implements", IMPLEMENTS);
+        keyword("static", STATIC);
+        keyword("import", IMPORT);
+        keyword("try", TRY);
+        keyword("catch", CATCH);
+        keyword("finally", FINALLY);
+        keyword("throw", THROW);
+        keyword("inherits", INHERITS);
+        keyword("enum", ENUM);
+        keyword("as", AS);
+        keyword("const", CONST);
+        keyword("trait", TRAIT);
+        keyword("abstract", ABSTRACT);
+        keyword("private", PRIVATE);
+        keyword("native", NATIVE);
+        keyword("match", MATCH);
+        keyword("case", CASE);
+        keyword("other", OTHER);
+        keyword("instanceof", INSTANCEOF);
     }
 
-    Scanner(String file, String source) {
+    private static void keyword(String text, TokenType type) {
+        int letter = text.charAt(0) - 'a';
+        int n = keywords[letter].length;
+        keywords[letter] = Arrays.copyOf(keywords[letter], n + 1);
+        keywords[letter][n] = text;
+        keywordTypes[letter] = Arrays.copyOf(keywordTypes[letter], n + 1);
+        keywordTypes[letter][n] = type;
+    }
+
+    Scanner(Context context, String file, CharSequence source) {
         String[] fileLoc;
         if (File.separator.equals("\\")) fileLoc = file.split("\\\\");
         else fileLoc = file.split(File.separator);
@@ -65,20 +94,65 @@ class Scanner {
         }
         String fileName = fileLoc[fileLoc.length - 1];
 
-        this.directory = dirName;
-        this.file = fileName;
-        this.source = new StringBuilder(source);
+        this.file = new SourceFile(dirName, fileName);
+        this.source = chars(source);
+        this.length = source.length();
+        this.context = context;
         this.start = this.current = this.col = 0;
         this.line = 1;
     }
 
     List<Token> scanTokens() {
-        while (!isAtEnd()) {
-            start = current;
-            scanToken();
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; ; i++) {
+            Token token = token(i);
+            tokens.add(token);
+            if (token.type == EOF) return tokens;
+        }
+    }
+
+    // The type of the index-th token of the file. Only the last few tokens scanned can be
+    // asked for; past the end of the file every token is EOF.
+    TokenType type(int index) {
+        return TYPES[types[slot(index)]];
+    }
+
+    Token token(int index) {
+        int slot = slot(index);
+        if (tokens[slot] == null) {
+            TokenType type = TYPES[types[slot]];
+            Object literal = literals[slot];
+            String lexeme = null;
+            if (type == STRING || type == NUMBER) {
+                lexeme = new String(source, offsets[slot], lengths[slot]);
+                if (type == NUMBER) literal = Double.parseDouble(lexeme);
+            } else if (type != EOF) {
+                lexeme = context.symbols.intern(source, offsets[slot], lengths[slot]);
+            }
+            tokens[slot] = new Token(file, type, lexeme, literal, lines[slot], cols[slot]);
+        }
+        return tokens[slot];
+    }
+
+    // A slot is reused WINDOW tokens later, so a token that far behind is gone; asking for it
+    // is a bug in the parser, which would otherwise get a later token back.
+    private int slot(int index) {
+        fill(index);
+        if (index < count - WINDOW) {
+            throw new IllegalStateException("Token " + index + " is no longer in the scanner's window of " + WINDOW + " tokens.");
+        }
+        return index % WINDOW;
+    }
+
+    private void fill(int index) {
+        while (count <= index) {
+            if (isAtEnd()) {
+                add(EOF, "EOF");
+            } else {
+                start = current;
+                scanToken();
+            }
         }
-        tokens.add(new Token(directory, file, EOF, null, "EOF", line, col));
-        return tokens;
     }
 
     private void scanToken() {
@@ -210,17 +284,32 @@ class Scanner {
             default:
                 if (isDigit(c)) number();
                 else if (isAlpha(c)) identifier();
-                else EverScript.error(file, line, col, "SyntaxError", "Unexpected character.");
+                else context.error(file.name, line, col, "SyntaxError", "Unexpected character.");
                 break;
         }
     }
 
     private void identifier() {
         while (isAlphaNumeric(peek())) advance();
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) type = IDENTIFIER;
-        addToken(type);
+        addToken(keyword());
+    }
+
+    private TokenType keyword() {
+        int letter = source[start] - 'a';
+        if (letter < 0 || letter >= 26) return IDENTIFIER;
+        String[] candidates = keywords[letter];
+        for (int i = 0; i < candidates.length; i++) {
+            if (matches(candidates[i])) return keywordTypes[letter][i];
+        }
+        return IDENTIFIER;
+    }
+
+    private boolean matches(String keyword) {
+        if (keyword.length() != current - start) return false;
+        for (int i = 1; i < keyword.length(); i++) {
+            if (source[start + i] != keyword.charAt(i)) return false;
+        }
+        return true;
     }
 
     private void number() {
@@ -229,10 +318,13 @@ class Scanner {
             advance();
             while (isDigit(peek())) advance();
         }
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+        addToken(NUMBER);
     }
 
     private void string(char quote) {
+        // The source is never modified; the value is only copied into a builder once it has escapes.
+        StringBuilder value = null;
+        int unescaped = current;
         while (peek() != quote && !isAtEnd()) {
             char first = peek();
             if (first == '\n') {
@@ -240,41 +332,42 @@ class Scanner {
                 col = 0;
             }
             if (first == '\\') {
-                char second = peekNext();
-                if (second == '\"') {
-                    source.deleteCharAt(current);
-                    source.setCharAt(current, '\"');
-                } else if (second == '\\') {
-                    source.deleteCharAt(current);
-                    source.setCharAt(current, '\\');
-                } else if (second == 'b') {
-                    source.deleteCharAt(current);
-                    source.setCharAt(current, '\b');
-                } else if (second == 'r') {
-                    source.deleteCharAt(current);
-                    source.setCharAt(current, '\r');
-                } else if (second == 'n') {
-                    source.deleteCharAt(current);
-                    source.setCharAt(current, '\n');
-                } else if (second == 't') {
-                    source.deleteCharAt(current);
-                    source.setCharAt(current, '\t');
+                char escaped = escape(peekNext());
+                if (escaped != '\0') {
+                    if (value == null) value = new StringBuilder();
+                    value.append(source, unescaped, current - unescaped).append(escaped);
+                    advance();
+                    advance();
+                    unescaped = current;
+                    continue;
                 }
             }
             advance();
         }
         if (isAtEnd()) {
-            EverScript.error(file, line, col, "SyntaxError", "Unterminated string; expected closing '" + quote + "'.");
+            context.error(file.name, line, col, "SyntaxError", "Unterminated string; expected closing '" + quote + "'.");
             return;
         }
+        String text = value == null ? text(start + 1, current) : value.append(source, unescaped, current - unescaped).toString();
         advance();
-        String value = source.substring(start + 1, current - 1);
-        addToken(STRING, value);
+        addToken(STRING, text);
+    }
+
+    private char escape(char c) {
+        switch (c) {
+            case '"': return '"';
+            case '\\': return '\\';
+            case 'b': return '\b';
+            case 'r': return '\r';
+            case 'n': return '\n';
+            case 't': return '\t';
+            default: return '\0';
+        }
     }
 
     private boolean match(char expected) {
         if (isAtEnd()) return false;
-        if (source.charAt(current) != expected) return false;
+        if (source[current] != expected) return false;
         current++;
         col++;
         return true;
@@ -282,12 +375,12 @@ class Scanner {
 
     private char peek() {
         if (isAtEnd()) return '\0';
-        return source.charAt(current);
+        return source[current];
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
+        if (current + 1 >= length) return '\0';
+        return source[current + 1];
     }
 
     private boolean isAlpha(char c) {
@@ -303,13 +396,13 @@ class Scanner {
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= length;
     }
 
     private char advance() {
         current++;
         col++;
-        return source.charAt(current - 1);
+        return source[current - 1];
     }
 
     private void addToken(TokenType type) {
@@ -317,7 +410,30 @@ class Scanner {
     }
 
     private void addToken(TokenType type, Object literal) {
-        String text = source.substring(start, current);
-        tokens.add(new Token(directory, file, type, text, literal, line, col));
+        offsets[count % WINDOW] = start;
+        lengths[count % WINDOW] = current - start;
+        add(type, literal);
+    }
+
+    private void add(TokenType type, Object literal) {
+        int slot = count++ % WINDOW;
+        types[slot] = type.ordinal();
+        literals[slot] = literal;
+        tokens[slot] = null;
+        lines[slot] = line;
+        cols[slot] = col;
+    }
+
+    private String text(int from, int to) {
+        return new String(source, from, to - from);
+    }
+
+    // A decoded file is scanned straight out of its buffer; other sources are copied once.
+    private static char[] chars(CharSequence source) {
+        if (source instanceof CharBuffer) {
+            CharBuffer buffer = (CharBuffer) source;
+            if (buffer.hasArray() && buffer.arrayOffset() + buffer.position() == 0) return buffer.array();
+        }
+        return source.toString().toCharArray();
     }
 }
@@ -0,0 +1,41 @@
+package com.linkbyte.everscript;
+
+import java.util.*;
+
+// Hidden class describing where an ESInstance keeps its fields. Instances of a class
+// start from the class's root shape and follow the same transitions as they gain
+// fields, so instances built the same way share one Shape and a field name maps to a
+// fixed offset in their storage array. Shapes never change once created; only the
+// transitions to their children grow, under the shape's lock, since instances of one class
+// can gain fields on several threads at once.
+class Shape {
+  final int size;
+  private final Map<String, Integer> offsets;
+  private Map<String, Shape> transitions;
+
+  Shape() {
+    this.size = 0;
+    this.offsets = Collections.emptyMap();
+  }
+
+  private Shape(Shape parent, String name) {
+    this.size = parent.size + 1;
+    this.offsets = new HashMap<>(parent.offsets);
+    this.offsets.put(name, parent.size);
+  }
+
+  int offset(String name) {
+    Integer offset = offsets.get(name);
+    return offset == null ? -1 : offset;
+  }
+
+  synchronized Shape with(String name) {
+    if (transitions == null) transitions = new HashMap<>();
+    Shape shape = transitions.get(name);
+    if (shape == null) {
+      shape = new Shape(this, name);
+      transitions.put(name, shape);
+    }
+    return shape;
+  }
+}
@@ -0,0 +1,14 @@
+package com.linkbyte.everscript;
+
+// Where a token came from. All the tokens of a file share one descriptor.
+class SourceFile {
+  static final SourceFile NONE = new SourceFile("", "");
+
+  final String directory;
+  final String name;
+
+  SourceFile(String directory, String name) {
+    this.directory = directory;
+    this.name = name;
+  }
+}
@@ -0,0 +1,56 @@
+package com.linkbyte.everscript;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+
+// Loads script files for the Scanner. Large files are mapped rather than read, and the bytes
+// are decoded once, straight into the CharBuffer the Scanner works on.
+class SourceReader {
+  // Below this size a plain read is cheaper than setting up a mapping.
+  private static final long MAP_THRESHOLD = 1 << 16;
+
+  static CharBuffer read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) throw new IOException("'" + path + "' is too large to load.");
+
+      ByteBuffer bytes;
+      if (size >= MAP_THRESHOLD) {
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining() && channel.read(bytes) != -1) ;
+        bytes.flip();
+      }
+      return decode(bytes);
+    }
+  }
+
+  // A byte order mark picks the charset; anything else is read in the platform charset,
+  // like the readers this replaces.
+  private static CharBuffer decode(ByteBuffer bytes) {
+    Charset charset = Charset.defaultCharset();
+    if (startsWith(bytes, 0xEF, 0xBB, 0xBF)) {
+      charset = StandardCharsets.UTF_8;
+      bytes.position(3);
+    } else if (startsWith(bytes, 0xFE, 0xFF)) {
+      charset = StandardCharsets.UTF_16BE;
+      bytes.position(2);
+    } else if (startsWith(bytes, 0xFF, 0xFE)) {
+      charset = StandardCharsets.UTF_16LE;
+      bytes.position(2);
+    }
+    return charset.decode(bytes);
+  }
+
+  private static boolean startsWith(ByteBuffer bytes, int... mark) {
+    if (bytes.remaining() < mark.length) return false;
+    for (int i = 0; i < mark.length; i++) {
+      if ((bytes.get(i) & 0xFF) != mark[i]) return false;
+    }
+    return true;
+  }
+}
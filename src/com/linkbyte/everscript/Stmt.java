@@ -30,6 +30,7 @@ abstract class Stmt {
     }
 
     final List<Stmt> statements;
+    int scopeSize;
   }
 
   static class Class extends Stmt {
@@ -49,6 +50,7 @@ abstract class Stmt {
     final Expr.Variable superclass;
     final List<Stmt.Function> methods;
     final List<Stmt.Function> staticMethods;
+    int slot = -1;
   }
 
   static class Expression extends Stmt {
@@ -61,7 +63,7 @@ abstract class Stmt {
       return visitor.visitExpressionStmt(this);
     }
 
-    final Expr expression;
+    Expr expression;
   }
 
   static class Function extends Stmt {
@@ -77,6 +79,7 @@ abstract class Stmt {
 
     final Token name;
     final Expr.Function function;
+    int slot = -1;
   }
 
   static class If extends Stmt {
@@ -91,9 +94,9 @@ abstract class Stmt {
       return visitor.visitIfStmt(this);
     }
 
-    final Expr condition;
-    final Stmt thenBranch;
-    final Stmt elseBranch;
+    Expr condition;
+    Stmt thenBranch;
+    Stmt elseBranch;
   }
 
   static class Return extends Stmt {
@@ -108,7 +111,7 @@ abstract class Stmt {
     }
 
     final Token keyword;
-    final Expr value;
+    Expr value;
   }
 
   static class Var extends Stmt {
@@ -123,7 +126,8 @@ abstract class Stmt {
     }
 
     final Token name;
-    final Expr initializer;
+    Expr initializer;
+    int slot = -1;
   }
 
   static class While extends Stmt {
@@ -137,8 +141,8 @@ abstract class Stmt {
       return visitor.visitWhileStmt(this);
     }
 
-    final Expr condition;
-    final Stmt body;
+    Expr condition;
+    Stmt body;
   }
 
   static class Import extends Stmt {
@@ -156,6 +160,7 @@ abstract class Stmt {
     final Token keyword;
     final Expr module;
     final Token namespace;
+    int slot = -1;
   }
 
   static class Enum extends Stmt {
@@ -168,6 +173,7 @@ abstract class Stmt {
 
     final Token name;
     final List<Token> properties;
+    int slot = -1;
   }
 
   static class Throw extends Stmt {
@@ -181,7 +187,7 @@ abstract class Stmt {
     }
 
     final Token keyword;
-    final Expr thrown;
+    Expr thrown;
   }
 
   static class Try extends Stmt {
@@ -197,7 +203,7 @@ abstract class Stmt {
     }
 
     final Token keyword;
-    final Stmt body;
+    Stmt body;
     final List<Stmt.Catch> catches;
     Stmt finallyStmt;
   }
@@ -217,7 +223,7 @@ abstract class Stmt {
     final Token keyword;
     final List<Token> errors;
     final Token identifier;
-    final Stmt body;
+    Stmt body;
   }
 
   abstract <R> R accept(Visitor<R> visitor);
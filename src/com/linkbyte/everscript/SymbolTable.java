@@ -0,0 +1,50 @@
+package com.linkbyte.everscript;
+
+// Interns names straight from a scanner's buffer: each distinct identifier or keyword is
+// allocated once per context, and every token that spells it shares the same String.
+class SymbolTable {
+  private String[] table = new String[256];
+  private int size = 0;
+
+  String intern(char[] chars, int offset, int length) {
+    // Same hash as String.hashCode(), so the String's cached hash can be compared directly.
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      hash = 31 * hash + chars[offset + i];
+    }
+    int mask = table.length - 1;
+    int index = spread(hash) & mask;
+    for (String symbol = table[index]; symbol != null; symbol = table[index]) {
+      if (symbol.hashCode() == hash && matches(symbol, chars, offset, length)) return symbol;
+      index = (index + 1) & mask;
+    }
+    String symbol = new String(chars, offset, length);
+    table[index] = symbol;
+    if (++size * 2 > table.length) grow();
+    return symbol;
+  }
+
+  private static boolean matches(String symbol, char[] chars, int offset, int length) {
+    if (symbol.length() != length) return false;
+    for (int i = 0; i < length; i++) {
+      if (symbol.charAt(i) != chars[offset + i]) return false;
+    }
+    return true;
+  }
+
+  private void grow() {
+    String[] old = table;
+    table = new String[old.length * 2];
+    int mask = table.length - 1;
+    for (String symbol : old) {
+      if (symbol == null) continue;
+      int index = spread(symbol.hashCode()) & mask;
+      while (table[index] != null) index = (index + 1) & mask;
+      table[index] = symbol;
+    }
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
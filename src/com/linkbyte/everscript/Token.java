@@ -1,15 +1,13 @@
 package com.linkbyte.everscript;
 
 class Token {
-  final String directory;
-  final String file;
+  final SourceFile file;
   final TokenType type;
   final String lexeme;
   final Object literal;
   final int line, col;
 
-  Token(String directory, String file, TokenType type, String lexeme, Object literal, int line, int col) {
-    this.directory = directory;
+  Token(SourceFile file, TokenType type, String lexeme, Object literal, int line, int col) {
     this.file = file;
     this.type = type;
     this.lexeme = lexeme;
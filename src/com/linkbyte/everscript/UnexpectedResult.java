@@ -0,0 +1,12 @@
+package com.linkbyte.everscript;
+
+class UnexpectedResult extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  final Object value;
+
+  UnexpectedResult(Object value) {
+    super(null, null, false, false);
+    this.value = value;
+  }
+}